@@ -0,0 +1,60 @@
+#!/usr/bin/env sh
+# Re-sends the same 1m block twice, as a retry after an ambiguous timeout does. The target is a table shaped like
+# dhan_ohlc (V9 deduplication window) with a sumState(volume) view like the *_state tables. It compares sending the
+# block with the same insert_deduplication_token against sending it without one, and prints active parts, raw rows
+# and the view's summed volume as a Markdown table. Exits non-zero if the tokened retry created a second part.
+# Runs against a scratch database, which it drops afterwards.
+# Prerequisites: clickhouse-client on PATH pointing at a test server (CLICKHOUSE_CLIENT to override).
+set -eu
+
+CLIENT="${CLICKHOUSE_CLIENT:-clickhouse-client}"
+DB="${BENCH_DB:-insert_dedup_check}"
+ROWS="${ROWS:-10000}"
+BLOCK="${TMPDIR:-/tmp}/$DB.jsonl"
+
+ch() {
+  $CLIENT --database "$DB" "$@"
+}
+
+$CLIENT -q "DROP DATABASE IF EXISTS $DB"
+$CLIENT -q "CREATE DATABASE $DB"
+trap 'rm -f "$BLOCK"; $CLIENT -q "DROP DATABASE IF EXISTS $DB"' EXIT
+
+for variant in token plain; do
+  ch -q "CREATE TABLE bars_$variant (sym LowCardinality(String), open Float32, high Float32, low Float32,
+    close Float32, volume UInt64, time DateTime('Asia/Kolkata'), ingest_time DateTime64(3, 'UTC') DEFAULT now64(3, 'UTC'))
+    ENGINE = ReplacingMergeTree(ingest_time) PARTITION BY toYYYYMM(time) ORDER BY (sym, time)
+    SETTINGS non_replicated_deduplication_window = 1000"
+  ch -q "CREATE TABLE state_$variant (sym LowCardinality(String), ts DateTime('Asia/Kolkata'),
+    volume AggregateFunction(sum, UInt64))
+    ENGINE = AggregatingMergeTree PARTITION BY toYYYYMM(ts) ORDER BY (sym, ts)"
+  ch -q "CREATE MATERIALIZED VIEW mv_$variant TO state_$variant AS
+    SELECT sym, toStartOfFiveMinutes(time) AS ts, sumState(volume) AS volume FROM bars_$variant GROUP BY sym, ts"
+done
+
+# One symbol's window as JSONEachRow, the format the service sends.
+ch -q "SELECT 'SYM1' AS sym, 100 + number % 7 AS open, 108 AS high, 99 AS low, 101 + number % 5 AS close,
+  1000 + number AS volume, toDateTime('2024-03-01 09:15:00', 'Asia/Kolkata') + number * 60 AS time
+  FROM numbers($ROWS) FORMAT JSONEachRow" > "$BLOCK"
+
+TOKEN="SYM1|2024-03-01 09:15:00~SYM1|last#$ROWS#check"
+for attempt in 1 2; do
+  ch --insert_deduplication_token "$TOKEN" -q "INSERT INTO bars_token FORMAT JSONEachRow" < "$BLOCK"
+  ch -q "INSERT INTO bars_plain FORMAT JSONEachRow" < "$BLOCK"
+done
+
+row() {
+  parts=$(ch -q "SELECT count() FROM system.parts WHERE database = '$DB' AND table = 'bars_$1' AND active")
+  rows=$(ch -q "SELECT count() FROM bars_$1")
+  volume=$(ch -q "SELECT sumMerge(volume) FROM state_$1")
+  echo "| $2 | $parts | $rows | $volume |"
+}
+
+expected=$(ch -q "SELECT sum(1000 + number) FROM numbers($ROWS)")
+echo "| Retry sent | Active parts | Raw rows | View sum(volume) (expected $expected) |"
+echo "|---|---|---|---|"
+row token "with insert_deduplication_token"
+row plain "without token"
+
+token_parts=$(ch -q "SELECT count() FROM system.parts WHERE database = '$DB' AND table = 'bars_token' AND active")
+[ "$token_parts" -eq 1 ]
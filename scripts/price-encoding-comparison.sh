@@ -0,0 +1,84 @@
+#!/usr/bin/env sh
+# Loads the same synthetic 1m bars into a Float32 table shaped like dhan_ohlc and an Int64-paise table shaped like
+# dhan_ohlc_ticks (V8), then prints compressed size, compression ratio, insert time and a 5m rollup query time
+# as a Markdown table. Runs against a scratch database, which it drops afterwards.
+# Prerequisites: clickhouse-client on PATH pointing at a test server (CLICKHOUSE_CLIENT to override).
+set -eu
+
+CLIENT="${CLICKHOUSE_CLIENT:-clickhouse-client}"
+DB="${BENCH_DB:-price_encoding_bench}"
+SYMBOLS="${SYMBOLS:-200}"
+MINUTES="${MINUTES:-50000}"
+ROWS=$((SYMBOLS * MINUTES))
+
+ch() {
+  $CLIENT --database "$DB" "$@"
+}
+
+# Prints the server-side elapsed seconds of one statement.
+timed() {
+  $CLIENT --database "$DB" --time -q "$1" 2>&1 >/dev/null | tail -n 1
+}
+
+$CLIENT -q "DROP DATABASE IF EXISTS $DB"
+$CLIENT -q "CREATE DATABASE $DB"
+trap '$CLIENT -q "DROP DATABASE IF EXISTS $DB"' EXIT
+
+ch -q "CREATE TABLE bars_float (sym LowCardinality(String), open Float32, high Float32, low Float32, close Float32,
+  volume UInt64, time DateTime('Asia/Kolkata'), ingest_time DateTime64(3, 'UTC') DEFAULT now64(3, 'UTC'))
+  ENGINE = ReplacingMergeTree(ingest_time) PARTITION BY toYYYYMM(time) ORDER BY (sym, time)"
+ch -q "CREATE TABLE bars_ticks (sym LowCardinality(String),
+  open Int64 CODEC(Delta(8), ZSTD(1)), high Int64 CODEC(Delta(8), ZSTD(1)),
+  low Int64 CODEC(Delta(8), ZSTD(1)), close Int64 CODEC(Delta(8), ZSTD(1)),
+  volume UInt64 CODEC(T64, ZSTD(1)), time DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  ingest_time DateTime64(3, 'UTC') DEFAULT now64(3, 'UTC') CODEC(DoubleDelta, ZSTD(1)))
+  ENGINE = ReplacingMergeTree(ingest_time) PARTITION BY toYYYYMM(time) ORDER BY (sym, time)"
+
+# Per-symbol random walk in paise around a symbol-specific level, so deltas look like real minute bars.
+ch -q "CREATE TABLE source ENGINE = Memory AS
+  SELECT concat('SYM', toString(s)) AS sym,
+         toDateTime('2021-01-01 09:15:00', 'Asia/Kolkata') + m * 60 AS time,
+         toInt64(10000 + s * 4937 + sum(toInt64(cityHash64(s, m) % 41) - 20) OVER (PARTITION BY s ORDER BY m)) AS close_ticks,
+         toInt64(cityHash64(m, s) % 60) AS spread,
+         cityHash64(s, m, 1) % 50000 AS volume
+  FROM (SELECT number % $SYMBOLS AS s, intDiv(number, $SYMBOLS) AS m FROM numbers($ROWS))"
+
+float_insert=$(timed "INSERT INTO bars_float (sym, open, high, low, close, volume, time)
+  SELECT sym, (close_ticks - spread / 2) / 100, (close_ticks + spread) / 100, (close_ticks - spread) / 100,
+         close_ticks / 100, volume, time FROM source")
+ticks_insert=$(timed "INSERT INTO bars_ticks (sym, open, high, low, close, volume, time)
+  SELECT sym, close_ticks - intDiv(spread, 2), close_ticks + spread, close_ticks - spread, close_ticks, volume, time
+  FROM source")
+ch -q "OPTIMIZE TABLE bars_float FINAL"
+ch -q "OPTIMIZE TABLE bars_ticks FINAL"
+
+rollup() {
+  echo "SELECT sym, toStartOfInterval(time, INTERVAL 5 MINUTE) AS ts, argMin(open, time), max(high), min(low),
+    argMax(close, time), sum(volume) FROM $1 GROUP BY sym, ts FORMAT Null"
+}
+float_query=$(timed "$(rollup bars_float)")
+ticks_query=$(timed "$(rollup bars_ticks)")
+
+row() {
+  ch -q "SELECT formatReadableSize(sum(data_compressed_bytes)), round(sum(data_uncompressed_bytes) / sum(data_compressed_bytes), 2)
+    FROM system.columns WHERE database = '$DB' AND table = '$1' AND name NOT IN ('ingest_time')" --format TSV
+}
+float_size=$(row bars_float)
+ticks_size=$(row bars_ticks)
+
+echo "Rows: $ROWS ($SYMBOLS symbols x $MINUTES minutes)"
+echo
+echo "| Layout | Compressed | Ratio | Insert (s) | 5m rollup query (s) |"
+echo "|--------|------------|-------|------------|---------------------|"
+printf '| Float32 (dhan_ohlc) | %s | %s | %s | %s |\n' "$(echo "$float_size" | cut -f1)" "$(echo "$float_size" | cut -f2)" "$float_insert" "$float_query"
+printf '| Int64 ticks (dhan_ohlc_ticks) | %s | %s | %s | %s |\n' "$(echo "$ticks_size" | cut -f1)" "$(echo "$ticks_size" | cut -f2)" "$ticks_insert" "$ticks_query"
+echo
+echo "Per-column compressed bytes:"
+echo
+echo "| Table | Column | Compressed | Ratio |"
+echo "|-------|--------|------------|-------|"
+ch -q "SELECT table, name, formatReadableSize(data_compressed_bytes), round(data_uncompressed_bytes / data_compressed_bytes, 2)
+  FROM system.columns WHERE database = '$DB' AND table LIKE 'bars_%' ORDER BY table, name" --format TSV \
+  | while IFS="$(printf '\t')" read -r table column size ratio; do
+      printf '| %s | %s | %s | %s |\n' "$table" "$column" "$size" "$ratio"
+    done
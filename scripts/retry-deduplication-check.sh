@@ -0,0 +1,24 @@
+#!/usr/bin/env sh
+# Runs the offline "training" workload with every Nth insert applied but answered with a 503 (a lost ack), so the
+# real insert path (OhlcRepository.sendBatch) retries it against the ClickHouse stand-in. Exits non-zero unless
+# every lost ack was re-sent under its original insert_deduplication_token and dropped as a duplicate.
+# Prerequisite: ./mvnw -DskipTests package
+set -eu
+
+JAR="${JAR:-$(ls target/ingestion-service-*.jar 2>/dev/null | head -n 1)}"
+LOST_ACK_EVERY="${LOST_ACK_EVERY:-20}"
+ROUNDS="${ROUNDS:-1}"
+
+if [ -z "$JAR" ] || [ ! -f "$JAR" ]; then
+  echo "Missing service jar; run ./mvnw -DskipTests package first" >&2
+  exit 1
+fi
+
+LOG="${TMPDIR:-/tmp}/retry-deduplication-check.log"
+trap 'rm -f "$LOG"' EXIT
+
+status=0
+java -Dspring.profiles.active=training -Dingestion.training.rounds="$ROUNDS" \
+  -Dingestion.training.lost-ack-every="$LOST_ACK_EVERY" -jar "$JAR" > "$LOG" 2>&1 || status=$?
+grep 'TRAINING-' "$LOG" || tail -n 20 "$LOG"
+exit "$status"
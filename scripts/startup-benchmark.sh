@@ -0,0 +1,31 @@
+#!/usr/bin/env sh
+# Compares cold start with and without the AOT cache using the offline "training" workload.
+# Reports time from process start to the first completed runIngestionJob and peak rows/s.
+# Prerequisite: ./mvnw -Paot-cache -DskipTests package
+set -eu
+
+RUNS="${RUNS:-5}"
+APP_DIR="${APP_DIR:-target/aot}"
+JAR="$APP_DIR/application.jar"
+CACHE="$APP_DIR/app.aot"
+
+if [ ! -f "$JAR" ] || [ ! -f "$CACHE" ]; then
+  echo "Missing $JAR or $CACHE; run ./mvnw -Paot-cache -DskipTests package first" >&2
+  exit 1
+fi
+
+run() {
+  label="$1"
+  shift
+  i=1
+  while [ "$i" -le "$RUNS" ]; do
+    line=$("$@" 2>&1 | grep 'TRAINING-SUMMARY' || true)
+    first=$(echo "$line" | sed -n 's/.*first-run-ms=\([0-9]*\).*/\1/p')
+    peak=$(echo "$line" | sed -n 's/.*peak-rows-per-sec=\([0-9]*\).*/\1/p')
+    printf '%-10s run=%s first-run-ms=%s peak-rows-per-sec=%s\n' "$label" "$i" "${first:-?}" "${peak:-?}"
+    i=$((i + 1))
+  done
+}
+
+run jvm java -Dspring.profiles.active=training -jar "$JAR"
+run jvm+aot java -XX:AOTCache="$CACHE" -Dspring.profiles.active=training -jar "$JAR"
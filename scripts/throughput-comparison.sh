@@ -0,0 +1,44 @@
+#!/usr/bin/env sh
+# Runs the offline "training" workload on the JVM, the native image and the PGO-optimized native image
+# and prints peak rows/s and time to the first completed ingestion run as a Markdown table.
+# Prerequisites:
+#   ./mvnw -DskipTests package                              -> target/ingestion-service-0.7.jar
+#   ./mvnw -Pnative,training-aot native:compile && cp target/ingestion-service target/ingestion-service-native
+#   ./mvnw -Pnative,training-aot,pgo-instrument native:compile
+#   ./target/ingestion-service-instrumented -XX:ProfilesDumpFile=target/default.iprof --spring.profiles.active=training
+#   ./mvnw -Pnative,training-aot,pgo native:compile && cp target/ingestion-service target/ingestion-service-pgo
+# Native builds need the training-aot profile so the workload beans survive AOT processing; PGO needs Oracle GraalVM.
+set -eu
+
+RUNS="${RUNS:-3}"
+JAR="${JAR:-$(ls target/ingestion-service-*.jar | head -n 1)}"
+NATIVE="${NATIVE:-target/ingestion-service-native}"
+PGO_NATIVE="${PGO_NATIVE:-target/ingestion-service-pgo}"
+
+measure() {
+  label="$1"
+  shift
+  best_peak=0
+  best_first=""
+  i=1
+  while [ "$i" -le "$RUNS" ]; do
+    line=$("$@" 2>&1 | grep 'TRAINING-SUMMARY' || true)
+    first=$(echo "$line" | sed -n 's/.*first-run-ms=\([0-9]*\).*/\1/p')
+    peak=$(echo "$line" | sed -n 's/.*peak-rows-per-sec=\([0-9]*\).*/\1/p')
+    if [ -n "$peak" ] && [ "$peak" -gt "$best_peak" ]; then
+      best_peak="$peak"
+    fi
+    if [ -n "$first" ] && { [ -z "$best_first" ] || [ "$first" -lt "$best_first" ]; }; then
+      best_first="$first"
+    fi
+    i=$((i + 1))
+  done
+  printf '| %s | %s | %s |\n' "$label" "$best_peak" "${best_first:-?}"
+}
+
+echo "| Build | Peak rows/s | First run completed (ms since start) |"
+echo "|-------|-------------|--------------------------------------|"
+measure "JVM" java -Dspring.profiles.active=training -jar "$JAR"
+[ -x "$NATIVE" ] && measure "Native" "$NATIVE" --spring.profiles.active=training
+[ -x "$PGO_NATIVE" ] && measure "Native + PGO" "$PGO_NATIVE" --spring.profiles.active=training
+exit 0
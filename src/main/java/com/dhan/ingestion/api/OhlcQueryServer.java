@@ -0,0 +1,143 @@
+package com.dhan.ingestion.api;
+
+import com.dhan.ingestion.service.OhlcQueryService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal read API over the OHLC tables: {@code GET /ohlc?symbol=&interval=&from=&to=[&format=arrow|rowbinary]}.
+ * Runs on the JDK HTTP server so the service itself stays a non-web application. It has no authentication, so it
+ * listens on loopback unless {@code bind-address} says otherwise. Results are streamed with chunked encoding.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "ingestion.query-api", name = "enabled", havingValue = "true")
+public class OhlcQueryServer {
+
+    private final OhlcQueryService ohlcQueryService;
+    private final String bindAddress;
+    private final int port;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public OhlcQueryServer(OhlcQueryService ohlcQueryService,
+                           @Value("${ingestion.query-api.bind-address:127.0.0.1}") String bindAddress,
+                           @Value("${ingestion.query-api.port:8081}") int port) {
+        this.ohlcQueryService = ohlcQueryService;
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.setExecutor(executor);
+        server.createContext("/ohlc", this::handleOhlc);
+        server.start();
+        log.info("OHLC query API listening on {}:{}", bindAddress, port);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private void handleOhlc(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Only GET is supported");
+                return;
+            }
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String format = params.getOrDefault("format", "arrow");
+            boolean answered;
+            try {
+                answered = ohlcQueryService.query(
+                        params.get("symbol"),
+                        params.getOrDefault("interval", "1m"),
+                        parseTime(params, "from"),
+                        parseTime(params, "to"),
+                        format,
+                        () -> {
+                            exchange.getResponseHeaders().set("Content-Type", OhlcQueryService.contentType(format));
+                            exchange.sendResponseHeaders(200, 0);
+                            return exchange.getResponseBody();
+                        });
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+                return;
+            }
+            if (!answered) {
+                sendText(exchange, 502, "ClickHouse query failed");
+            }
+        } catch (Exception e) {
+            log.error("Failed to serve OHLC query {}", exchange.getRequestURI(), e);
+            // part of a chunked body may be out already; failing the handler drops the connection instead of
+            // ending the body, so the client cannot take a truncated result for a complete one
+            throw e instanceof IOException io ? io : new IOException(e);
+        }
+        exchange.close();
+    }
+
+    private LocalDateTime parseTime(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isBlank()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
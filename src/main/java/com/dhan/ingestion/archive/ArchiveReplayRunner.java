@@ -0,0 +1,201 @@
+package com.dhan.ingestion.archive;
+
+import com.dhan.ingestion.client.DhanHqClient;
+import com.dhan.ingestion.client.OhlcBatch;
+import com.dhan.ingestion.client.OhlcInterval;
+import com.dhan.ingestion.repository.OhlcRepository;
+import com.dhan.ingestion.resilience.CircuitOpenException;
+import com.dhan.ingestion.service.BarValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds {@code dhan_ohlc} from the {@link ResponseArchive} without any DhanHQ calls: archived 1m responses are
+ * read from memory-mapped segments, parsed, validated and inserted, one task per symbol (in archive order, so a
+ * later fetch of the same window still wins) with {@code concurrency} symbols in flight. Only bars inside
+ * {@code [from, to)} are inserted, and bars dropped by validation are not recorded as dead letters again. Exits when
+ * done.
+ */
+@Component
+@Profile("archive-replay")
+@Slf4j
+public class ArchiveReplayRunner implements ApplicationRunner {
+
+    private final ResponseArchive archive;
+    private final DhanHqClient dhanHqClient;
+    private final BarValidator barValidator;
+    private final OhlcRepository ohlcRepository;
+    private final ConfigurableApplicationContext context;
+    private final Set<String> symbols;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final int concurrency;
+    private final int batchRows;
+    private final Map<Path, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    public ArchiveReplayRunner(ResponseArchive archive,
+                               DhanHqClient dhanHqClient,
+                               BarValidator barValidator,
+                               OhlcRepository ohlcRepository,
+                               ConfigurableApplicationContext context,
+                               @Value("${ingestion.archive.replay.symbols:}") String symbols,
+                               @Value("${ingestion.archive.replay.from:}") String from,
+                               @Value("${ingestion.archive.replay.to:}") String to,
+                               @Value("${ingestion.archive.replay.concurrency:4}") int concurrency,
+                               @Value("${ingestion.archive.replay.batch-rows:100000}") int batchRows) {
+        this.archive = archive;
+        this.dhanHqClient = dhanHqClient;
+        this.barValidator = barValidator;
+        this.ohlcRepository = ohlcRepository;
+        this.context = context;
+        this.symbols = Arrays.stream(symbols.split(","))
+                .map(String::trim)
+                .filter(symbol -> !symbol.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.from = from.isBlank() ? LocalDateTime.MIN : LocalDate.parse(from).atStartOfDay();
+        this.to = to.isBlank() ? LocalDateTime.MAX : LocalDate.parse(to).atStartOfDay();
+        this.concurrency = Math.max(1, concurrency);
+        this.batchRows = Math.max(1, batchRows);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long startedAt = System.nanoTime();
+        Map<String, List<ResponseArchive.Entry>> bySymbol = new LinkedHashMap<>();
+        for (ResponseArchive.Entry entry : archive.readIndex()) {
+            if (OhlcInterval.ONE_MINUTE.code().equals(entry.interval())
+                    && (symbols.isEmpty() || symbols.contains(entry.symbol()))
+                    && entry.to().isAfter(from) && entry.from().isBefore(to)) {
+                bySymbol.computeIfAbsent(entry.symbol(), ignored -> new ArrayList<>()).add(entry);
+            }
+        }
+        int records = bySymbol.values().stream().mapToInt(List::size).sum();
+        log.info("Replaying {} archived responses for {} symbols from {}", records, bySymbol.size(), archive.getDirectory());
+
+        AtomicLong rows = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong corrupt = new AtomicLong();
+        AtomicLong failedSymbols = new AtomicLong();
+        Semaphore permits = new Semaphore(concurrency);
+        List<Callable<Void>> tasks = new ArrayList<>(bySymbol.size());
+        bySymbol.forEach((symbol, entries) -> tasks.add(() -> {
+            permits.acquire();
+            try {
+                if (!replaySymbol(symbol, entries, rows, bytes, corrupt)) {
+                    failedSymbols.incrementAndGet();
+                }
+            } catch (CircuitOpenException e) {
+                failedSymbols.incrementAndGet();
+                log.error("Archive replay stopped for {}: {}", symbol, e.getMessage());
+            } finally {
+                permits.release();
+            }
+            return null;
+        }));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.invokeAll(tasks);
+        }
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        log.info("ARCHIVE-REPLAY-SUMMARY responses={} rows={} raw-bytes={} corrupt={} failed-symbols={} in {} ms ({} rows/s)",
+                records, rows.get(), bytes.get(), corrupt.get(), failedSymbols.get(), elapsedMs,
+                rows.get() * 1000 / elapsedMs);
+        int code = SpringApplication.exit(context, () -> failedSymbols.get() == 0 ? 0 : 1);
+        System.exit(code);
+    }
+
+    private boolean replaySymbol(String symbol, List<ResponseArchive.Entry> entries, AtomicLong rows, AtomicLong bytes,
+                                 AtomicLong corrupt) {
+        long fromSecond = OhlcBatch.epochSecond(from);
+        long toSecond = OhlcBatch.epochSecond(to);
+        OhlcBatch pending = new OhlcBatch(symbol, batchRows);
+        for (ResponseArchive.Entry entry : entries) {
+            OhlcBatch bars;
+            try {
+                ResponseArchive.Response response = ResponseArchive.read(segment(entry.segment()), entry);
+                bars = dhanHqClient.parseBars(symbol, response.body());
+                barValidator.revalidate(response.ticker(), bars);
+                bytes.addAndGet(response.body().length);
+            } catch (IOException | UncheckedIOException | IllegalStateException e) {
+                corrupt.incrementAndGet();
+                log.warn("Skipping archived response for {} {} -> {}: {}", symbol, entry.from(), entry.to(), e.getMessage());
+                continue;
+            }
+            long[] times = bars.epochSeconds();
+            for (int i = 0; i < bars.size(); i++) {
+                long time = times[i];
+                if (time < fromSecond || time >= toSecond) {
+                    continue;
+                }
+                int last = pending.size() - 1;
+                if (last >= 0 && time <= pending.epochSeconds()[last]) {
+                    // a later fetch of a pending bar replaces it; anything else out of order goes into a later insert
+                    int at = Arrays.binarySearch(pending.epochSeconds(), 0, pending.size(), time);
+                    if (at >= 0) {
+                        pending.open()[at] = bars.open()[i];
+                        pending.high()[at] = bars.high()[i];
+                        pending.low()[at] = bars.low()[i];
+                        pending.close()[at] = bars.close()[i];
+                        pending.volume()[at] = bars.volume()[i];
+                        continue;
+                    }
+                }
+                if (pending.size() >= batchRows || (last >= 0 && time <= pending.epochSeconds()[last])) {
+                    if (!flush(symbol, pending, rows)) {
+                        return false;
+                    }
+                    pending = new OhlcBatch(symbol, batchRows);
+                }
+                pending.add(time, bars.open()[i], bars.high()[i], bars.low()[i], bars.close()[i], bars.volume()[i]);
+            }
+        }
+        return pending.size() == 0 || flush(symbol, pending, rows);
+    }
+
+    private boolean flush(String symbol, OhlcBatch pending, AtomicLong rows) {
+        if (!ohlcRepository.batchInsertBars(pending)) {
+            log.error("Archive replay insert failed for {}; stopping this symbol", symbol);
+            return false;
+        }
+        rows.addAndGet(pending.size());
+        return true;
+    }
+
+    private MappedByteBuffer segment(Path path) {
+        return segments.computeIfAbsent(path, file -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map archive segment " + file, e);
+            }
+        });
+    }
+}
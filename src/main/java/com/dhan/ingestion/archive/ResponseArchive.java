@@ -0,0 +1,304 @@
+package com.dhan.ingestion.archive;
+
+import com.dhan.ingestion.client.OhlcInterval;
+import com.dhan.ingestion.domain.Ticker;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional local archive of raw DhanHQ chart responses, so {@code dhan_ohlc} can be rebuilt without refetching.
+ * Responses are deflated into append-only segment files ({@code segment-NNNNNN.dat}); every record is listed in
+ * the segment's {@code .idx} file by symbol, interval, window, offset and length. Each process start opens a new
+ * segment, so a torn record can only be the last one of an old segment, and it fails its CRC on replay.
+ */
+@Component
+@Slf4j
+public class ResponseArchive {
+
+    private static final int MAGIC = 0x44484131;
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    public record Entry(Path segment, String symbol, String interval, LocalDateTime from, LocalDateTime to,
+                        long offset, int length) {
+    }
+
+    public record Response(Ticker ticker, String interval, LocalDateTime from, LocalDateTime to, long fetchedAtMillis,
+                           byte[] body) {
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel segment;
+    private BufferedWriter index;
+    private Path segmentPath;
+    private long position;
+    private int nextSegment = -1;
+
+    public ResponseArchive(@Value("${ingestion.archive.enabled:false}") boolean enabled,
+                           @Value("${ingestion.archive.path:state/archive}") String directory,
+                           @Value("${ingestion.archive.segment-max-bytes:268435456}") long segmentMaxBytes) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentMaxBytes = Math.min(segmentMaxBytes, Integer.MAX_VALUE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Archives one raw response. Failures are logged and never fail the fetch.
+     */
+    public void append(Ticker ticker, OhlcInterval interval, LocalDateTime from, LocalDateTime to, byte[] body) {
+        if (!enabled) {
+            return;
+        }
+        byte[] record;
+        try {
+            record = encode(ticker, interval.code(), from, to, body);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not encode archive record for {} {} -> {}: {}", ticker.getSymbol(), from, to, e.getMessage());
+            return;
+        }
+        lock.lock();
+        try {
+            if (segment == null || position + record.length > segmentMaxBytes) {
+                rollover();
+            }
+            long offset = position;
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                position += segment.write(buffer);
+            }
+            index.write(String.join("\t", ticker.getSymbol(), interval.code(), from.toString(), to.toString(),
+                    Long.toString(offset), Integer.toString(record.length)));
+            index.newLine();
+            index.flush();
+        } catch (IOException e) {
+            log.warn("Could not archive response for {} {} -> {}: {}", ticker.getSymbol(), from, to, e.getMessage());
+            closeSegment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads every segment index in segment order; entries within a segment keep their write order.
+     */
+    public List<Entry> readIndex() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return entries;
+        }
+        List<Path> indexes;
+        try (Stream<Path> files = Files.list(directory)) {
+            indexes = files.filter(file -> file.getFileName().toString().endsWith(INDEX_SUFFIX)).sorted().toList();
+        }
+        for (Path indexFile : indexes) {
+            String name = indexFile.getFileName().toString();
+            Path segmentFile = indexFile.resolveSibling(name.substring(0, name.length() - INDEX_SUFFIX.length()) + SEGMENT_SUFFIX);
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                if (fields.length != 6) {
+                    log.warn("Skipping malformed archive index line in {}: {}", indexFile, line);
+                    continue;
+                }
+                entries.add(new Entry(segmentFile, fields[0], fields[1], LocalDateTime.parse(fields[2]),
+                        LocalDateTime.parse(fields[3]), Long.parseLong(fields[4]), Integer.parseInt(fields[5])));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Decodes the record at {@code entry} from a mapped segment, verifying its CRC.
+     */
+    public static Response read(ByteBuffer segment, Entry entry) throws IOException {
+        if (entry.offset() + entry.length() > segment.capacity()) {
+            throw new IOException("Archive record at " + entry.offset() + " runs past the end of " + entry.segment());
+        }
+        ByteBuffer record = segment.slice((int) entry.offset(), entry.length());
+        if (record.getInt() != MAGIC || record.getInt() != entry.length()) {
+            throw new IOException("Corrupt archive record header at " + entry.offset() + " in " + entry.segment());
+        }
+        Ticker ticker = Ticker.builder()
+                .symbol(readString(record))
+                .securityId(readString(record))
+                .exchangeSegment(readString(record))
+                .instrumentType(readString(record))
+                .isActive(true)
+                .build();
+        String interval = readString(record);
+        LocalDateTime from = LocalDateTime.parse(readString(record));
+        LocalDateTime to = LocalDateTime.parse(readString(record));
+        long fetchedAt = record.getLong();
+        int rawLength = record.getInt();
+        long expectedCrc = record.getInt() & 0xFFFFFFFFL;
+        ByteBuffer compressed = record.slice();
+        CRC32 crc = new CRC32();
+        crc.update(compressed.duplicate());
+        if (crc.getValue() != expectedCrc) {
+            throw new IOException("Archive record CRC mismatch at " + entry.offset() + " in " + entry.segment());
+        }
+
+        byte[] body = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(body, read, rawLength - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != rawLength) {
+                throw new IOException("Archive record at " + entry.offset() + " inflated to " + read + " of " + rawLength + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Archive record at " + entry.offset() + " is not valid deflate data", e);
+        } finally {
+            inflater.end();
+        }
+        return new Response(ticker, interval, from, to, fetchedAt, body);
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            closeSegment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static byte[] encode(Ticker ticker, String interval, LocalDateTime from, LocalDateTime to, byte[] body) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] payload = compressed.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        byte[][] strings = {
+                utf8(ticker.getSymbol()), utf8(ticker.getSecurityId()), utf8(ticker.getExchangeSegment()),
+                utf8(ticker.getInstrumentType()), utf8(interval), utf8(from.toString()), utf8(to.toString())
+        };
+        int length = 4 + 4 + 8 + 4 + 4 + payload.length;
+        for (byte[] value : strings) {
+            length += 2 + value.length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(MAGIC).putInt(length);
+        for (byte[] value : strings) {
+            record.putShort((short) value.length).put(value);
+        }
+        record.putLong(System.currentTimeMillis())
+                .putInt(body.length)
+                .putInt((int) crc.getValue())
+                .put(payload);
+        return record.array();
+    }
+
+    private void rollover() throws IOException {
+        closeSegment();
+        Files.createDirectories(directory);
+        if (nextSegment < 0) {
+            nextSegment = firstFreeSegment();
+        }
+        String name = String.format("segment-%06d", nextSegment++);
+        segmentPath = directory.resolve(name + SEGMENT_SUFFIX);
+        segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        index = Files.newBufferedWriter(directory.resolve(name + INDEX_SUFFIX), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        position = 0;
+        log.info("Archiving DhanHQ responses to {}", segmentPath);
+    }
+
+    private int firstFreeSegment() throws IOException {
+        int highest = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("segment-") && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        highest = Math.max(highest, Integer.parseInt(name, 8, name.length() - SEGMENT_SUFFIX.length(), 10));
+                    } catch (NumberFormatException ignored) {
+                        // not one of ours
+                    }
+                }
+            }
+        }
+        return highest + 1;
+    }
+
+    private void closeSegment() {
+        try {
+            if (index != null) {
+                index.close();
+            }
+            if (segment != null) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            log.warn("Could not close archive segment {}: {}", segmentPath, e.getMessage());
+        } finally {
+            index = null;
+            segment = null;
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Archive header field too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,103 +1,181 @@
 package com.dhan.ingestion.client;
 
-import com.dhan.ingestion.domain.OhlcData;
+import com.dhan.ingestion.archive.ResponseArchive;
 import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.resilience.Bulkhead;
+import com.dhan.ingestion.resilience.CircuitBreaker;
+import com.dhan.ingestion.resilience.CircuitBreakers;
+import com.dhan.ingestion.resilience.SegmentBulkheads;
+import com.dhan.ingestion.telemetry.OhlcFetchEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
 
-import java.math.BigDecimal;
-import java.time.Instant;
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
 
-import com.dhan.ingestion.config.AccessTokenStore;
+import com.dhan.ingestion.config.DhanCredentialPool;
 
 @Service
 @Slf4j
 public class DhanHqClient implements MarketDataClient {
 
+    private static final TypeReference<Map<String, Object>> RESPONSE_TYPE = new TypeReference<>() {};
+
     private final RestClient dhanRestClient;
-    private final Semaphore apiSemaphore;
     private final String baseUrl;
-    private final AccessTokenStore accessTokenStore;
+    private final DhanCredentialPool credentialPool;
+    private final SegmentBulkheads segmentBulkheads;
+    private final ResponseArchive responseArchive;
+    private final CircuitBreaker circuitBreaker;
+    private final RequestHedger requestHedger;
+    private final ObjectMapper objectMapper;
 
     public DhanHqClient(@Qualifier("dhanRestClient") RestClient dhanRestClient,
-                        Semaphore dhanApiSemaphore,
                         @Value("${dhan.api.base-url}") String baseUrl,
-                        AccessTokenStore accessTokenStore) {
+                        DhanCredentialPool credentialPool,
+                        SegmentBulkheads segmentBulkheads,
+                        ResponseArchive responseArchive,
+                        CircuitBreakers circuitBreakers,
+                        RequestHedger requestHedger) {
         this.dhanRestClient = dhanRestClient;
-        this.apiSemaphore = dhanApiSemaphore;
         this.baseUrl = baseUrl;
-        this.accessTokenStore = accessTokenStore;
+        this.credentialPool = credentialPool;
+        this.segmentBulkheads = segmentBulkheads;
+        this.responseArchive = responseArchive;
+        this.circuitBreaker = circuitBreakers.dhan();
+        this.requestHedger = requestHedger;
+        this.objectMapper = new ObjectMapper();
     }
 
+    /**
+     * Returns an empty result when DhanHQ has no data for the window and throws {@link MarketDataException} when the
+     * window could not be fetched, or {@link com.dhan.ingestion.resilience.CircuitOpenException} without calling
+     * DhanHQ while its circuit breaker is open.
+     */
     @Override
-    public List<OhlcData> fetchOhlc(Ticker ticker, LocalDateTime from, LocalDateTime to) {
+    public OhlcFetchResult fetchOhlcWindow(Ticker ticker, OhlcInterval interval, LocalDateTime from, LocalDateTime to) {
         if (!from.isBefore(to)) {
-            return Collections.emptyList();
+            return OhlcFetchResult.empty();
         }
 
-        return fetchOhlc1m(ticker, from, to);
+        return fetchBars(ticker, interval, from, to);
     }
 
-    private List<OhlcData> fetchOhlc1m(Ticker ticker, LocalDateTime from, LocalDateTime to) {
-        // DhanHQ expects YYYY-MM-DD HH:mm:ss
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        String fromDate = from.format(formatter);
-        String toDate = to.format(formatter);
-
-        Map<String, Object> payload = Map.of(
-                "securityId", String.valueOf(ticker.getSecurityId()),
-                "exchangeSegment", String.valueOf(ticker.getExchangeSegment()),
-                "instrument", String.valueOf(ticker.getInstrumentType()),
-                "interval", "1",
-                "oi", false,
-                "fromDate", fromDate,
-                "toDate", toDate
-        );
+    private OhlcFetchResult fetchBars(Ticker ticker, OhlcInterval interval, LocalDateTime from, LocalDateTime to) {
+        String fromDate;
+        String toDate;
+        Map<String, Object> payload;
+        String path;
+        if (interval.isDaily()) {
+            // /charts/historical takes dates and treats toDate as exclusive
+            fromDate = from.toLocalDate().toString();
+            toDate = (to.toLocalTime().equals(LocalTime.MIDNIGHT) ? to.toLocalDate() : to.toLocalDate().plusDays(1)).toString();
+            payload = Map.of(
+                    "securityId", String.valueOf(ticker.getSecurityId()),
+                    "exchangeSegment", String.valueOf(ticker.getExchangeSegment()),
+                    "instrument", String.valueOf(ticker.getInstrumentType()),
+                    "expiryCode", 0,
+                    "oi", false,
+                    "fromDate", fromDate,
+                    "toDate", toDate
+            );
+            path = "/charts/historical";
+        } else {
+            // DhanHQ expects YYYY-MM-DD HH:mm:ss
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            fromDate = from.format(formatter);
+            toDate = to.format(formatter);
+            payload = Map.of(
+                    "securityId", String.valueOf(ticker.getSecurityId()),
+                    "exchangeSegment", String.valueOf(ticker.getExchangeSegment()),
+                    "instrument", String.valueOf(ticker.getInstrumentType()),
+                    "interval", interval.code(),
+                    "oi", false,
+                    "fromDate", fromDate,
+                    "toDate", toDate
+            );
+            path = "/charts/intraday";
+        }
 
-        boolean acquired = false;
+        circuitBreaker.acquire();
+        OhlcFetchEvent event = new OhlcFetchEvent();
+        event.begin();
+        Bulkhead.Lease segmentLease = null;
+        Exception failure = null;
+        // the outcome also decides the circuit breaker call, so it and the timings live in locals; the event is only
+        // filled in when it is going to be committed
+        String outcome = null;
+        String hedge = null;
+        int attempts = 0;
+        long permitWaitNanos = 0;
+        long httpNanos = 0;
+        long parseNanos = 0;
+        long bytes = 0;
+        int rows = 0;
         try {
-            apiSemaphore.acquire();
-            acquired = true;
+            long segmentWaitStart = System.nanoTime();
+            segmentLease = segmentBulkheads.acquireApi(ticker.getExchangeSegment());
+            permitWaitNanos += System.nanoTime() - segmentWaitStart;
 
-            String url = baseUrl + "/charts/intraday";
+            String url = baseUrl + path;
 
             for (int attempt = 1; attempt <= 3; attempt++) {
-                try {
-                    String token = accessTokenStore.getAccessToken();
-                    if (token == null || token.isBlank()) {
-                        log.error("Missing DhanHQ access token; unable to fetch data for {}", ticker.getSymbol());
-                        return Collections.emptyList();
+                attempts = attempt;
+                long waitStart = System.nanoTime();
+                long requestStart = waitStart;
+                // the credential slot is returned before any retry back-off below
+                try (DhanCredentialPool.Lease lease = credentialPool.acquire()) {
+                    permitWaitNanos += System.nanoTime() - waitStart;
+                    String token = lease.accessToken();
+                    if (token == null) {
+                        throw new MarketDataException("Missing DhanHQ access token for client "
+                                + lease.credential().getClientId() + "; unable to fetch data for " + ticker.getSymbol());
                     }
 
-                    Map<String, Object> response = dhanRestClient.post()
+                    requestStart = System.nanoTime();
+                    RequestHedger.Response response = requestHedger.send(lease, accessToken -> dhanRestClient.post()
                             .uri(url)
-                            .header("access-token", token)
+                            .header("access-token", accessToken)
                             .accept(MediaType.APPLICATION_JSON)
                             .contentType(MediaType.APPLICATION_JSON)
                             .body(payload)
                             .retrieve()
-                            .body(new ParameterizedTypeReference<Map<String, Object>>() {});
+                            .body(byte[].class));
+                    long latencyNanos = System.nanoTime() - requestStart;
+                    httpNanos += latencyNanos;
+                    hedge = response.hedge();
+                    byte[] body = response.body();
 
-                    if (response == null || !response.containsKey("timestamp")) {
-                        return Collections.emptyList();
+                    if (body == null || body.length == 0) {
+                        outcome = "empty";
+                        return OhlcFetchResult.empty();
                     }
-
-                    return parseResponse(ticker.getSymbol(), response);
+                    bytes = body.length;
+                    responseArchive.append(ticker, interval, from, to, body);
+                    long parseStart = System.nanoTime();
+                    OhlcBatch bars = parseBars(ticker.getSymbol(), body);
+                    parseNanos = System.nanoTime() - parseStart;
+                    rows = bars.size();
+                    outcome = bars.size() == 0 ? "empty" : "ok";
+                    return new OhlcFetchResult(bars, body.length, latencyNanos);
                 } catch (RestClientResponseException e) {
+                    httpNanos += System.nanoTime() - requestStart;
+                    if (e.getStatusCode().value() == 400 && isNoDataError(e.getResponseBodyAsString())) {
+                        log.debug("DhanHQ has no data for {} {} -> {}", ticker.getSymbol(), fromDate, toDate);
+                        outcome = "no-data";
+                        return OhlcFetchResult.empty();
+                    }
                     if (shouldRetryDhanError(e, attempt) || isRateLimited(e)) {
                         long delayMs = attempt == 1 ? 5_000L : 10_000L;
                         log.warn("Retrying DhanHQ request for {} {} -> {} (attempt {}/3 after {} ms)",
@@ -106,7 +184,7 @@ public class DhanHqClient implements MarketDataClient {
                             Thread.sleep(delayMs);
                         } catch (InterruptedException interruptedException) {
                             Thread.currentThread().interrupt();
-                            return Collections.emptyList();
+                            return OhlcFetchResult.empty();
                         }
                         continue;
                     }
@@ -114,30 +192,73 @@ public class DhanHqClient implements MarketDataClient {
                         e.getResponseBodyAsString();
                         if (e.getResponseBodyAsString().contains("DH-905")) {
                             log.warn("DhanHQ returned DH-905 for {} {} -> {}", ticker.getSymbol(), fromDate, toDate);
-                            return Collections.emptyList();
+                            outcome = "no-data";
+                            return OhlcFetchResult.empty();
                         }
                     }
-                    log.error("Error fetching data for {} {} -> {}", ticker.getSymbol(), fromDate, toDate, e);
-                    return Collections.emptyList();
+                    failure = e;
+                    throw new MarketDataException("DhanHQ returned " + e.getStatusCode().value() + " for "
+                            + ticker.getSymbol() + " " + fromDate + " -> " + toDate + ": " + e.getResponseBodyAsString(), e);
+                } catch (MarketDataException e) {
+                    throw e;
+                } catch (InterruptedException e) {
+                    throw e;
                 } catch (Exception e) {
-                    log.error("Error fetching data for {} {} -> {}", ticker.getSymbol(), fromDate, toDate, e);
-                    return Collections.emptyList();
+                    failure = e;
+                    throw new MarketDataException("Error fetching data for " + ticker.getSymbol() + " " + fromDate
+                            + " -> " + toDate + ": " + e.getMessage(), e);
                 }
             }
 
-            return Collections.emptyList();
+            throw new MarketDataException("DhanHQ retries exhausted for " + ticker.getSymbol() + " " + fromDate
+                    + " -> " + toDate);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             log.warn("Interrupted while waiting for DhanHQ API slot for {}", ticker.getSymbol());
-            return Collections.emptyList();
+            return OhlcFetchResult.empty();
         } finally {
-            if (acquired) {
-                apiSemaphore.release();
+            if (segmentLease != null) {
+                segmentLease.close();
+            }
+            if (outcome != null) {
+                circuitBreaker.onSuccess();
+            } else if (failure != null) {
+                circuitBreaker.onError(failure);
+            } else {
+                circuitBreaker.onNeutral();
             }
+            if (event.shouldCommit()) {
+                event.symbol = ticker.getSymbol();
+                event.exchangeSegment = ticker.getExchangeSegment();
+                event.interval = interval.code();
+                event.windowFrom = fromDate;
+                event.windowTo = toDate;
+                event.attempts = attempts;
+                event.permitWait = permitWaitNanos;
+                event.http = httpNanos;
+                event.hedge = hedge;
+                event.parse = parseNanos;
+                event.bytes = bytes;
+                event.rows = rows;
+                event.outcome = outcome != null ? outcome
+                        : Thread.currentThread().isInterrupted() ? "interrupted" : "error";
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Parses a raw chart response body; shared by live fetches and archive replay.
+     */
+    public OhlcBatch parseBars(String symbol, byte[] body) throws IOException {
+        Map<String, Object> response = objectMapper.readValue(body, RESPONSE_TYPE);
+        if (response == null || !response.containsKey("timestamp")) {
+            return new OhlcBatch(symbol, 0);
         }
+        return parseResponse(symbol, response);
     }
 
-    private List<OhlcData> parseResponse(String symbol, Map<String, Object> data) {
+    private OhlcBatch parseResponse(String symbol, Map<String, Object> data) {
         List<?> timestamps = requireList(data, "timestamp");
         List<?> open = requireList(data, "open");
         List<?> high = requireList(data, "high");
@@ -155,29 +276,19 @@ public class DhanHqClient implements MarketDataClient {
                     + ", volume=" + volume.size());
         }
 
-        List<OhlcData> result = new ArrayList<>(size);
+        OhlcBatch result = new OhlcBatch(symbol, size);
         for (int i = 0; i < size; i++) {
             long tsSeconds = requireEpochSeconds(symbol, i, timestamps.get(i));
-            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(tsSeconds), ZoneId.of("Asia/Kolkata"));
-
-            BigDecimal openVal = BigDecimal.valueOf(requireNumber(symbol, "open", i, open.get(i)).doubleValue());
-            BigDecimal highVal = BigDecimal.valueOf(requireNumber(symbol, "high", i, high.get(i)).doubleValue());
-            BigDecimal lowVal = BigDecimal.valueOf(requireNumber(symbol, "low", i, low.get(i)).doubleValue());
-            BigDecimal closeVal = BigDecimal.valueOf(requireNumber(symbol, "close", i, close.get(i)).doubleValue());
             long vol = requireNumber(symbol, "volume", i, volume.get(i)).longValue();
             if (vol < 0) {
                 vol = 0;
             }
-
-            result.add(OhlcData.builder()
-                    .sym(symbol)
-                    .open(openVal)
-                    .high(highVal)
-                    .low(lowVal)
-                    .close(closeVal)
-                    .volume(vol)
-                    .time(time)
-                    .build());
+            result.add(tsSeconds,
+                    requireNumber(symbol, "open", i, open.get(i)).doubleValue(),
+                    requireNumber(symbol, "high", i, high.get(i)).doubleValue(),
+                    requireNumber(symbol, "low", i, low.get(i)).doubleValue(),
+                    requireNumber(symbol, "close", i, close.get(i)).doubleValue(),
+                    vol);
         }
         return result;
     }
@@ -7,5 +7,13 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 public interface MarketDataClient {
-    List<OhlcData> fetchOhlc(Ticker ticker, LocalDateTime from, LocalDateTime to);
+    default List<OhlcData> fetchOhlc(Ticker ticker, LocalDateTime from, LocalDateTime to) {
+        return fetchOhlcWindow(ticker, from, to).rows();
+    }
+
+    default OhlcFetchResult fetchOhlcWindow(Ticker ticker, LocalDateTime from, LocalDateTime to) {
+        return fetchOhlcWindow(ticker, OhlcInterval.ONE_MINUTE, from, to);
+    }
+
+    OhlcFetchResult fetchOhlcWindow(Ticker ticker, OhlcInterval interval, LocalDateTime from, LocalDateTime to);
 }
@@ -0,0 +1,15 @@
+package com.dhan.ingestion.client;
+
+/**
+ * A window could not be fetched, as opposed to the window legitimately having no data.
+ */
+public class MarketDataException extends RuntimeException {
+
+    public MarketDataException(String message) {
+        super(message);
+    }
+
+    public MarketDataException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
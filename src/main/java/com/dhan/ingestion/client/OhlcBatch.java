@@ -0,0 +1,144 @@
+package com.dhan.ingestion.client;
+
+import com.dhan.ingestion.domain.OhlcData;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bars of one response in primitive columns (epoch seconds, prices, volume). Checks and repairs work on the arrays
+ * in place; {@link #rows()} materializes {@link OhlcData} once, for the first {@link #size()} entries.
+ */
+public final class OhlcBatch {
+
+    private static final ZoneOffset MARKET_OFFSET = ZoneOffset.ofHoursMinutes(5, 30);
+
+    private final String symbol;
+    private long[] epochSeconds;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private long[] volume;
+    private int size;
+    private List<OhlcData> rows;
+
+    public OhlcBatch(String symbol, int capacity) {
+        this.symbol = symbol;
+        this.epochSeconds = new long[capacity];
+        this.open = new double[capacity];
+        this.high = new double[capacity];
+        this.low = new double[capacity];
+        this.close = new double[capacity];
+        this.volume = new long[capacity];
+    }
+
+    public void add(long epochSecond, double openValue, double highValue, double lowValue, double closeValue, long volumeValue) {
+        if (size == epochSeconds.length) {
+            grow();
+        }
+        epochSeconds[size] = epochSecond;
+        open[size] = openValue;
+        high[size] = highValue;
+        low[size] = lowValue;
+        close[size] = closeValue;
+        volume[size] = volumeValue;
+        size++;
+        rows = null;
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Keeps the first {@code newSize} bars, after entries were compacted in place.
+     */
+    public void truncate(int newSize) {
+        size = Math.min(size, newSize);
+        rows = null;
+    }
+
+    /*
+     * Backing columns; only the first size() entries are valid. Callers that write to them must not have
+     * materialized rows() yet.
+     */
+
+    public long[] epochSeconds() {
+        return epochSeconds;
+    }
+
+    public double[] open() {
+        return open;
+    }
+
+    public double[] high() {
+        return high;
+    }
+
+    public double[] low() {
+        return low;
+    }
+
+    public double[] close() {
+        return close;
+    }
+
+    public long[] volume() {
+        return volume;
+    }
+
+    public static LocalDateTime marketTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, MARKET_OFFSET);
+    }
+
+    public static long epochSecond(LocalDateTime marketTime) {
+        return marketTime.toEpochSecond(MARKET_OFFSET);
+    }
+
+    /**
+     * Epoch second at which the market-time calendar month after {@code epochSecond} starts; bars before it share
+     * the {@code toYYYYMM(time)} partition.
+     */
+    public static long nextMonthStart(long epochSecond) {
+        return marketTime(epochSecond).toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay()
+                .toEpochSecond(MARKET_OFFSET);
+    }
+
+    public List<OhlcData> rows() {
+        if (rows == null) {
+            List<OhlcData> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(OhlcData.builder()
+                        .sym(symbol)
+                        .open(BigDecimal.valueOf(open[i]))
+                        .high(BigDecimal.valueOf(high[i]))
+                        .low(BigDecimal.valueOf(low[i]))
+                        .close(BigDecimal.valueOf(close[i]))
+                        .volume(volume[i])
+                        .time(marketTime(epochSeconds[i]))
+                        .build());
+            }
+            rows = result;
+        }
+        return rows;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, epochSeconds.length * 2);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        open = Arrays.copyOf(open, capacity);
+        high = Arrays.copyOf(high, capacity);
+        low = Arrays.copyOf(low, capacity);
+        close = Arrays.copyOf(close, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+    }
+}
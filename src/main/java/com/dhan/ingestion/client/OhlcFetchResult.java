@@ -0,0 +1,24 @@
+package com.dhan.ingestion.client;
+
+import com.dhan.ingestion.domain.OhlcData;
+
+import java.util.List;
+
+/**
+ * Bars for one requested window plus the size and HTTP latency of the response that produced them.
+ */
+public record OhlcFetchResult(OhlcBatch bars, long responseBytes, long latencyNanos) {
+
+    /** Each call gets its own batch; OhlcBatch is mutable and callers may append to it. */
+    public static OhlcFetchResult empty() {
+        return new OhlcFetchResult(new OhlcBatch(null, 0), 0L, 0L);
+    }
+
+    public List<OhlcData> rows() {
+        return bars.rows();
+    }
+
+    public int rowCount() {
+        return bars.size();
+    }
+}
@@ -0,0 +1,47 @@
+package com.dhan.ingestion.client;
+
+import java.util.Arrays;
+
+/**
+ * Bar sizes DhanHQ serves: intraday intervals from {@code /charts/intraday} and daily bars from
+ * {@code /charts/historical}.
+ */
+public enum OhlcInterval {
+    ONE_MINUTE("1", 1),
+    FIVE_MINUTES("5", 5),
+    FIFTEEN_MINUTES("15", 15),
+    TWENTY_FIVE_MINUTES("25", 25),
+    SIXTY_MINUTES("60", 60),
+    DAILY("D", 1440);
+
+    private final String code;
+    private final int minutes;
+
+    OhlcInterval(String code, int minutes) {
+        this.code = code;
+        this.minutes = minutes;
+    }
+
+    public String code() {
+        return code;
+    }
+
+    public int minutes() {
+        return minutes;
+    }
+
+    public boolean isDaily() {
+        return this == DAILY;
+    }
+
+    /**
+     * Accepts DhanHQ interval codes ({@code 1}, {@code 5}, {@code 15}, {@code 25}, {@code 60}, {@code D}) or enum names.
+     */
+    public static OhlcInterval parse(String value) {
+        String trimmed = value.trim();
+        return Arrays.stream(values())
+                .filter(interval -> interval.code.equalsIgnoreCase(trimmed) || interval.name().equalsIgnoreCase(trimmed))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported OHLC interval: " + value));
+    }
+}
@@ -0,0 +1,247 @@
+package com.dhan.ingestion.client;
+
+import com.dhan.ingestion.config.DhanCredentialPool;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Hedges idempotent DhanHQ reads: when a request has not answered within the recent {@code percentile} latency, a
+ * second copy is sent and whichever answers first is kept; the other is cancelled. Hedges are bounded twice: each
+ * request earns {@code budget-ratio} of a hedge (so at most that share of extra calls), and a hedge only goes out
+ * when a credential has a free slot and pacing headroom right now, so it never queues behind or delays a regular
+ * request.
+ */
+@Component
+@Slf4j
+public class RequestHedger {
+
+    private static final double MAX_BUDGET = 10.0;
+
+    /**
+     * The winning response body and what hedging did for it: {@code none}, {@code lost} (a hedge was sent but the
+     * original answered first) or {@code won}.
+     */
+    public record Response(byte[] body, String hedge) {
+    }
+
+    private final boolean enabled;
+    private final double percentile;
+    private final int minSamples;
+    private final long minDelayNanos;
+    private final double budgetRatio;
+    private final DhanCredentialPool credentialPool;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] samples;
+    private int next;
+    private int sampleCount;
+    private double budget;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder won = new LongAdder();
+    private final LongAdder skippedBudget = new LongAdder();
+    private final LongAdder skippedNoSlot = new LongAdder();
+
+    public RequestHedger(@Value("${dhan.api.hedge.enabled:false}") boolean enabled,
+                         @Value("${dhan.api.hedge.percentile:0.95}") double percentile,
+                         @Value("${dhan.api.hedge.min-samples:50}") int minSamples,
+                         @Value("${dhan.api.hedge.sample-window:256}") int sampleWindow,
+                         @Value("${dhan.api.hedge.min-delay-ms:100}") long minDelayMs,
+                         @Value("${dhan.api.hedge.budget-ratio:0.05}") double budgetRatio,
+                         DhanCredentialPool credentialPool) {
+        this.enabled = enabled;
+        this.percentile = Math.clamp(percentile, 0.5, 0.999);
+        this.samples = new long[Math.max(16, sampleWindow)];
+        this.minSamples = Math.clamp(minSamples, 1, samples.length);
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+        this.budgetRatio = Math.max(0, budgetRatio);
+        this.credentialPool = credentialPool;
+    }
+
+    /**
+     * Sends {@code request} with the primary lease's token, hedging it with a spare credential slot when it runs past
+     * the hedge delay. Errors are those of the original request unless the hedge succeeds.
+     */
+    public Response send(DhanCredentialPool.Lease lease, Function<String, byte[]> request) throws InterruptedException {
+        if (!enabled) {
+            return new Response(request.apply(lease.accessToken()), "none");
+        }
+        requests.increment();
+        earnBudget();
+        long delayNanos = hedgeDelayNanos();
+        if (delayNanos < 0) {
+            return new Response(timed(request, lease.accessToken()), "none");
+        }
+
+        ExecutorCompletionService<byte[]> completion = new ExecutorCompletionService<>(executor);
+        Future<byte[]> primary = completion.submit(() -> timed(request, lease.accessToken()));
+        Future<byte[]> hedge = null;
+        DhanCredentialPool.Lease hedgeLease = null;
+        try {
+            if (completion.poll(delayNanos, TimeUnit.NANOSECONDS) != null) {
+                return new Response(result(primary), "none");
+            }
+            hedgeLease = acquireHedge();
+            if (hedgeLease == null) {
+                return new Response(result(primary), "none");
+            }
+            String hedgeToken = hedgeLease.accessToken();
+            hedge = completion.submit(() -> timed(request, hedgeToken));
+            hedged.increment();
+
+            Future<byte[]> first = completion.take();
+            Future<byte[]> second = first == primary ? hedge : primary;
+            try {
+                return answered(first, first == hedge);
+            } catch (RuntimeException firstError) {
+                completion.take();
+                try {
+                    return answered(second, second == hedge);
+                } catch (RuntimeException secondError) {
+                    // both failed; report the original request's error
+                    throw first == primary ? firstError : secondError;
+                }
+            }
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+            if (hedgeLease != null) {
+                hedgeLease.close();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.stats.report-interval-ms:60000}",
+            initialDelayString = "${ingestion.stats.report-interval-ms:60000}")
+    public void reportStats() {
+        long total = requests.sumThenReset();
+        if (!enabled || total == 0) {
+            return;
+        }
+        long sent = hedged.sumThenReset();
+        long delayNanos = hedgeDelayNanos();
+        log.info("DhanHQ hedging: {} requests, {} hedged ({}%), {} won by the hedge, skipped {} over budget and {} "
+                        + "with no spare credential slot; hedge delay {}", total, sent,
+                String.format("%.1f", sent * 100.0 / total), won.sumThenReset(), skippedBudget.sumThenReset(),
+                skippedNoSlot.sumThenReset(),
+                delayNanos < 0 ? "not yet known" : TimeUnit.NANOSECONDS.toMillis(delayNanos) + " ms");
+    }
+
+    private Response answered(Future<byte[]> future, boolean fromHedge) throws InterruptedException {
+        byte[] body = result(future);
+        if (fromHedge) {
+            won.increment();
+            return new Response(body, "won");
+        }
+        return new Response(body, "lost");
+    }
+
+    /**
+     * Spends one hedge from the budget and takes a spare credential slot; refunds the budget when no slot is free.
+     */
+    private DhanCredentialPool.Lease acquireHedge() throws InterruptedException {
+        lock.lock();
+        try {
+            if (budget < 1.0) {
+                skippedBudget.increment();
+                return null;
+            }
+            budget -= 1.0;
+        } finally {
+            lock.unlock();
+        }
+        DhanCredentialPool.Lease lease = credentialPool.tryAcquire();
+        if (lease == null) {
+            skippedNoSlot.increment();
+            lock.lock();
+            try {
+                budget += 1.0;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return lease;
+    }
+
+    private void earnBudget() {
+        lock.lock();
+        try {
+            budget = Math.min(MAX_BUDGET, budget + budgetRatio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The recent {@code percentile} latency (at least {@code min-delay-ms}), or {@code -1} until {@code min-samples}
+     * latencies have been seen.
+     */
+    private long hedgeDelayNanos() {
+        long[] window;
+        lock.lock();
+        try {
+            if (sampleCount < minSamples) {
+                return -1;
+            }
+            window = Arrays.copyOf(samples, sampleCount);
+        } finally {
+            lock.unlock();
+        }
+        Arrays.sort(window);
+        int index = Math.min(window.length - 1, (int) Math.ceil(percentile * window.length) - 1);
+        return Math.max(minDelayNanos, window[Math.max(0, index)]);
+    }
+
+    private byte[] timed(Function<String, byte[]> request, String token) {
+        long start = System.nanoTime();
+        byte[] body = request.apply(token);
+        long latency = System.nanoTime() - start;
+        lock.lock();
+        try {
+            samples[next] = latency;
+            next = (next + 1) % samples.length;
+            sampleCount = Math.min(sampleCount + 1, samples.length);
+        } finally {
+            lock.unlock();
+        }
+        return body;
+    }
+
+    private static byte[] result(Future<byte[]> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (CancellationException e) {
+            throw new IllegalStateException("DhanHQ request was cancelled", e);
+        }
+    }
+}
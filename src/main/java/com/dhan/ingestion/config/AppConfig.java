@@ -1,31 +1,54 @@
 package com.dhan.ingestion.config;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.http.client.ClientHttpRequestFactoryBuilder;
+import org.springframework.boot.http.client.HttpClientSettings;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
-import java.util.concurrent.Semaphore;
+import java.time.Duration;
 
 @Configuration
+@EnableConfigurationProperties(BulkheadProperties.class)
 public class AppConfig {
 
     @Bean
-    public RestClient dhanRestClient(RestClient.Builder builder) {
-        return builder.build();
+    public RestClient dhanRestClient(RestClient.Builder builder,
+                                     ObjectProvider<ClientHttpRequestFactoryBuilder<?>> requestFactoryBuilder,
+                                     ObjectProvider<HttpClientSettings> httpClientSettings,
+                                     @Value("${dhan.api.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                     @Value("${dhan.api.read-timeout-ms:30000}") long readTimeoutMs) {
+        return builder
+                .requestFactory(requestFactory(requestFactoryBuilder, httpClientSettings, connectTimeoutMs, readTimeoutMs))
+                .build();
     }
 
     @Bean
     public RestClient clickhouseRestClient(RestClient.Builder builder,
-                                           @Value("${clickhouse.http.base-url}") String clickhouseBaseUrl) {
+                                           ObjectProvider<ClientHttpRequestFactoryBuilder<?>> requestFactoryBuilder,
+                                           ObjectProvider<HttpClientSettings> httpClientSettings,
+                                           @Value("${clickhouse.http.base-url}") String clickhouseBaseUrl,
+                                           @Value("${clickhouse.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                           @Value("${clickhouse.http.read-timeout-ms:300000}") long readTimeoutMs) {
         return builder
                 .baseUrl(clickhouseBaseUrl)
+                .requestFactory(requestFactory(requestFactoryBuilder, httpClientSettings, connectTimeoutMs, readTimeoutMs))
                 .build();
     }
 
-    @Bean
-    public Semaphore dhanApiSemaphore(
-            @Value("${dhan.api.inflight-limit:10}") int inflightLimit) {
-        return new Semaphore(inflightLimit);
+    /**
+     * The auto-configured HTTP client with connect and read deadlines, so a hung connection fails with a
+     * {@link org.springframework.web.client.ResourceAccessException} instead of holding its permits forever.
+     */
+    private static ClientHttpRequestFactory requestFactory(ObjectProvider<ClientHttpRequestFactoryBuilder<?>> builder,
+                                                           ObjectProvider<HttpClientSettings> settings,
+                                                           long connectTimeoutMs, long readTimeoutMs) {
+        return builder.getIfAvailable(ClientHttpRequestFactoryBuilder::detect)
+                .build(settings.getIfAvailable(HttpClientSettings::defaults)
+                        .withTimeouts(Duration.ofMillis(connectTimeoutMs), Duration.ofMillis(readTimeoutMs)));
     }
 }
@@ -0,0 +1,31 @@
+package com.dhan.ingestion.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "ingestion.bulkheads")
+public record BulkheadProperties(@DefaultValue Pool defaults,
+                                 @DefaultValue Map<String, Pool> segments,
+                                 @DefaultValue("true") boolean borrowEnabled,
+                                 @DefaultValue("1") int borrowReserve) {
+
+    public BulkheadProperties {
+        segments = segments == null ? Map.of() : Map.copyOf(segments);
+    }
+
+    public Pool forSegment(String segment) {
+        return segments.getOrDefault(segment, defaults);
+    }
+
+    /**
+     * @param apiPermits        concurrent DhanHQ requests owned by the segment
+     * @param taskPermits       concurrent ticker syncs (fetch + insert) owned by the segment
+     * @param requestsPerSecond DhanHQ request pacing for the segment, {@code 0} for unpaced
+     */
+    public record Pool(@DefaultValue("4") int apiPermits,
+                       @DefaultValue("50") int taskPermits,
+                       @DefaultValue("0") double requestsPerSecond) {
+    }
+}
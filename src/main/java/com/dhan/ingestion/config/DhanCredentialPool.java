@@ -0,0 +1,189 @@
+package com.dhan.ingestion.config;
+
+import com.dhan.ingestion.resilience.Bulkhead;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * DhanHQ credentials (client id + access token), each with its own in-flight and rate budget. Requests go to the
+ * credential with the most headroom; a credential that can no longer be renewed is taken out of the pool.
+ */
+@Component
+@Slf4j
+public class DhanCredentialPool {
+
+    private static final long ACQUIRE_POLL_MS = 50L;
+
+    public static final class Credential {
+        private final String clientId;
+        private final AtomicReference<String> accessToken;
+        private final Bulkhead budget;
+        private final boolean primary;
+
+        private Credential(String clientId, String accessToken, Bulkhead budget, boolean primary) {
+            this.clientId = clientId;
+            this.accessToken = new AtomicReference<>(sanitize(accessToken));
+            this.budget = budget;
+            this.primary = primary;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public String getAccessToken() {
+            return accessToken.get();
+        }
+
+        public void setAccessToken(String token) {
+            accessToken.set(sanitize(token));
+        }
+
+        /**
+         * The credential configured through {@code dhan.api.access-token}/{@code client-id}.
+         */
+        public boolean isPrimary() {
+            return primary;
+        }
+    }
+
+    /**
+     * A request slot on one credential; closing it returns the slot.
+     */
+    public record Lease(Credential credential, Bulkhead.Lease permit) implements AutoCloseable {
+
+        public String accessToken() {
+            return credential.getAccessToken();
+        }
+
+        @Override
+        public void close() {
+            permit.close();
+        }
+    }
+
+    private final List<Credential> active = new CopyOnWriteArrayList<>();
+
+    public DhanCredentialPool(@Value("${dhan.api.access-token:}") String accessToken,
+                              @Value("${dhan.api.client-id:}") String clientId,
+                              @Value("${dhan.api.extra-credentials:}") String extraCredentials,
+                              @Value("${dhan.api.inflight-limit:10}") int inflightLimit,
+                              @Value("${dhan.api.requests-per-second:0}") double requestsPerSecond) {
+        active.add(new Credential(clientId, accessToken, new Bulkhead(clientId, inflightLimit, requestsPerSecond), true));
+        for (String entry : extraCredentials.split(";")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.indexOf(':');
+            if (separator <= 0 || separator == trimmed.length() - 1) {
+                throw new IllegalArgumentException("dhan.api.extra-credentials entries must be clientId:accessToken");
+            }
+            String extraClientId = trimmed.substring(0, separator).trim();
+            active.add(new Credential(extraClientId, trimmed.substring(separator + 1),
+                    new Bulkhead(extraClientId, inflightLimit, requestsPerSecond), false));
+        }
+        log.info("DhanHQ credential pool has {} credentials", active.size());
+    }
+
+    /**
+     * Blocks until a credential has a free slot and its pacing allows a request, preferring the credential with the
+     * most free slots and then the shortest pacing delay.
+     */
+    public Lease acquire() throws InterruptedException {
+        while (true) {
+            List<Credential> candidates = new ArrayList<>(active);
+            if (candidates.isEmpty()) {
+                throw new IllegalStateException("No active DhanHQ credentials");
+            }
+            candidates.sort(Comparator.comparingInt((Credential credential) -> -credential.budget.availablePermits())
+                    .thenComparingLong(credential -> credential.budget.pacingDelayNanos()));
+            for (Credential credential : candidates) {
+                Bulkhead.Lease permit = credential.budget.tryAcquire(0);
+                if (permit != null) {
+                    return paced(credential, permit);
+                }
+            }
+            Credential best = candidates.getFirst();
+            Bulkhead.Lease permit = best.budget.tryAcquire(ACQUIRE_POLL_MS);
+            if (permit != null) {
+                return paced(best, permit);
+            }
+        }
+    }
+
+    /**
+     * Takes a slot only when a credential has one free and its pacing allows a request right now; never waits and
+     * never overtakes queued callers. Returns {@code null} when nothing is spare.
+     */
+    public Lease tryAcquire() throws InterruptedException {
+        for (Credential credential : active) {
+            if (credential.budget.pacingDelayNanos() > 0) {
+                continue;
+            }
+            Bulkhead.Lease permit = credential.budget.tryAcquire(0);
+            if (permit == null) {
+                continue;
+            }
+            if (credential.budget.tryPace()) {
+                return new Lease(credential, permit);
+            }
+            permit.close();
+        }
+        return null;
+    }
+
+    public List<Credential> credentials() {
+        return List.copyOf(active);
+    }
+
+    /**
+     * Takes the credential out of rotation; returns the number of credentials left.
+     */
+    public int remove(Credential credential, String reason) {
+        if (active.remove(credential)) {
+            log.error("Removed DhanHQ credential {} from the pool: {} ({} left)", credential.getClientId(), reason, active.size());
+        }
+        return active.size();
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.stats.report-interval-ms:60000}",
+            initialDelayString = "${ingestion.stats.report-interval-ms:60000}")
+    public void reportStats() {
+        if (active.size() < 2) {
+            return;
+        }
+        for (Credential credential : active) {
+            Bulkhead.Stats stats = credential.budget.snapshotAndReset();
+            log.info("Credential {}: inUse={}/{} acquired={} wait avg={}ms hold avg={}ms", stats.name(), stats.inUse(),
+                    stats.capacity(), stats.acquired(), String.format("%.1f", stats.avgWaitMs()),
+                    String.format("%.1f", stats.avgHoldMs()));
+        }
+    }
+
+    private Lease paced(Credential credential, Bulkhead.Lease permit) throws InterruptedException {
+        try {
+            credential.budget.pace();
+        } catch (InterruptedException e) {
+            permit.close();
+            throw e;
+        }
+        return new Lease(credential, permit);
+    }
+
+    private static String sanitize(String token) {
+        if (token == null) {
+            return null;
+        }
+        String trimmed = token.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
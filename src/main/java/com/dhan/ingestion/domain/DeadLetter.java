@@ -0,0 +1,32 @@
+package com.dhan.ingestion.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetter {
+    public static final String KIND_WINDOW = "window";
+    public static final String KIND_ROW = "row";
+    public static final String KIND_INVALID = "invalid";
+
+    private String id;
+    private String kind;
+    private String symbol;
+    private String securityId;
+    private String exchangeSegment;
+    private String instrumentType;
+    private LocalDateTime windowFrom;
+    private LocalDateTime windowTo;
+    private String reason;
+    private String payload;
+    private Integer attempts;
+    private Integer replayed;
+    private LocalDateTime recordedAt;
+}
@@ -0,0 +1,29 @@
+package com.dhan.ingestion.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FreshnessSnapshot {
+    public static final String ALL_SEGMENTS = "ALL";
+
+    private LocalDateTime snapshotTime;
+    private LocalDateTime bellwetherTime;
+    private String exchangeSegment;
+    private Integer symbols;
+    private Integer breaching;
+    private Long sloSeconds;
+    private Long p50LagSeconds;
+    private Long p95LagSeconds;
+    private Long maxLagSeconds;
+    private List<Integer> lagHistogram;
+    private List<String> laggards;
+}
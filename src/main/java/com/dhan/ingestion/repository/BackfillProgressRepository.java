@@ -0,0 +1,109 @@
+package com.dhan.ingestion.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tracks how far deep backfill has progressed per symbol and source interval in {@code dhan_backfill_progress}.
+ */
+@Repository
+@Slf4j
+public class BackfillProgressRepository {
+
+    private static final DateTimeFormatter CLICKHOUSE_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final RestClient clickhouseRestClient;
+
+    @Value("${clickhouse.http.database:default}")
+    private String database;
+
+    @Value("${clickhouse.http.user:}")
+    private String clickhouseUser;
+
+    @Value("${clickhouse.http.password:}")
+    private String clickhousePassword;
+
+    public BackfillProgressRepository(@Qualifier("clickhouseRestClient") RestClient clickhouseRestClient) {
+        this.clickhouseRestClient = clickhouseRestClient;
+    }
+
+    /**
+     * Progress keyed by {@code sym|interval}, or empty when it could not be read.
+     */
+    public Optional<Map<String, LocalDateTime>> findAll() {
+        String query = "SELECT sym, interval, max(backfilled_to) FROM " + database + ".dhan_backfill_progress "
+                + "GROUP BY sym, interval FORMAT TabSeparated";
+        try {
+            RestClient.RequestHeadersSpec<?> request = clickhouseRestClient.get()
+                    .uri(uriBuilder -> uriBuilder.path("/")
+                            .queryParam("query", query)
+                            .build());
+            if (!clickhouseUser.isBlank()) {
+                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            }
+            String response = request.retrieve().body(String.class);
+            Map<String, LocalDateTime> result = new HashMap<>();
+            if (response == null || response.isBlank()) {
+                return Optional.of(result);
+            }
+            for (String line : response.trim().split("\\R")) {
+                String[] fields = line.split("\t");
+                if (fields.length == 3) {
+                    result.put(key(fields[0], fields[1]), LocalDateTime.parse(fields[2], CLICKHOUSE_TIME_FORMATTER));
+                }
+            }
+            return Optional.of(result);
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to read backfill progress (status={}): {}", ex.getStatusCode(), ex.getResponseBodyAsString());
+            return Optional.empty();
+        } catch (Exception ex) {
+            log.error("Failed to read backfill progress", ex);
+            return Optional.empty();
+        }
+    }
+
+    public boolean save(String symbol, String interval, LocalDateTime backfilledTo) {
+        String query = "INSERT INTO " + database + ".dhan_backfill_progress (sym, interval, backfilled_to) VALUES ('"
+                + escapeSqlString(symbol) + "', '" + escapeSqlString(interval) + "', toDateTime('"
+                + backfilledTo.format(CLICKHOUSE_TIME_FORMATTER) + "', 'Asia/Kolkata'))";
+        try {
+            RestClient.RequestHeadersSpec<?> request = clickhouseRestClient.post()
+                    .uri(uriBuilder -> uriBuilder.path("/")
+                            .queryParam("query", query)
+                            .build());
+            if (!clickhouseUser.isBlank()) {
+                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            }
+            request.retrieve().toBodilessEntity();
+            return true;
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to save backfill progress for {} (status={}): {}", symbol, ex.getStatusCode(), ex.getResponseBodyAsString());
+            return false;
+        } catch (Exception ex) {
+            log.error("Failed to save backfill progress for {}", symbol, ex);
+            return false;
+        }
+    }
+
+    public static String key(String symbol, String interval) {
+        return symbol + "|" + interval;
+    }
+
+    private String escapeSqlString(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("'", "''");
+    }
+}
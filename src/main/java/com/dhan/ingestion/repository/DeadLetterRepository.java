@@ -0,0 +1,285 @@
+package com.dhan.ingestion.repository;
+
+import com.dhan.ingestion.domain.DeadLetter;
+import com.dhan.ingestion.domain.Ticker;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers failed windows and rejected rows in memory and writes them to {@code ingestion_dead_letter} in batches,
+ * so recording a failure never costs an extra round trip on the ingestion path. Replay outcomes are appended to
+ * {@code ingestion_dead_letter_status} rather than mutating the entries, so they are visible to the next read at once.
+ */
+@Repository
+@Slf4j
+public class DeadLetterRepository {
+
+    private static final DateTimeFormatter CLICKHOUSE_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_REASON_LENGTH = 2000;
+
+    private final RestClient clickhouseRestClient;
+    private final ObjectMapper objectMapper;
+    private final int maxBuffered;
+    private final ConcurrentLinkedQueue<DeadLetter> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    @Value("${clickhouse.http.database:default}")
+    private String database;
+
+    @Value("${clickhouse.http.user:}")
+    private String clickhouseUser;
+
+    @Value("${clickhouse.http.password:}")
+    private String clickhousePassword;
+
+    public DeadLetterRepository(@Qualifier("clickhouseRestClient") RestClient clickhouseRestClient,
+                                @Value("${ingestion.dead-letter.max-buffered:100000}") int maxBuffered) {
+        this.clickhouseRestClient = clickhouseRestClient;
+        this.maxBuffered = maxBuffered;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        this.objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        var javaTimeModule = new JavaTimeModule();
+        javaTimeModule.addDeserializer(LocalDateTime.class, new LocalDateTimeDeserializer(CLICKHOUSE_TIME_FORMATTER));
+        javaTimeModule.addSerializer(LocalDateTime.class, new LocalDateTimeSerializer(CLICKHOUSE_TIME_FORMATTER));
+        this.objectMapper.registerModule(javaTimeModule);
+    }
+
+    public void recordWindow(Ticker ticker, LocalDateTime from, LocalDateTime to, String reason) {
+        enqueue(DeadLetter.builder()
+                .kind(DeadLetter.KIND_WINDOW)
+                .symbol(ticker.getSymbol())
+                .securityId(ticker.getSecurityId())
+                .exchangeSegment(ticker.getExchangeSegment())
+                .instrumentType(ticker.getInstrumentType())
+                .windowFrom(from)
+                .windowTo(to)
+                .reason(reason)
+                .build());
+    }
+
+    public void recordRow(String symbol, LocalDateTime time, String row, String reason) {
+        enqueue(DeadLetter.builder()
+                .kind(DeadLetter.KIND_ROW)
+                .symbol(symbol)
+                .windowFrom(time)
+                .windowTo(time.plusMinutes(1))
+                .reason(reason)
+                .payload(row)
+                .build());
+    }
+
+    /**
+     * Records a bar that failed validation. Invalid bars are kept for inspection only and never replayed.
+     */
+    public void recordInvalidBar(String symbol, String exchangeSegment, LocalDateTime time, String bar, String reason) {
+        enqueue(DeadLetter.builder()
+                .kind(DeadLetter.KIND_INVALID)
+                .symbol(symbol)
+                .exchangeSegment(exchangeSegment)
+                .windowFrom(time)
+                .windowTo(time.plusMinutes(1))
+                .reason(reason)
+                .payload(bar)
+                .build());
+    }
+
+    /**
+     * Writes everything buffered so far as one JSONEachRow insert; entries are kept for the next flush on failure.
+     */
+    @Scheduled(fixedDelayString = "${ingestion.dead-letter.flush-interval-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        List<DeadLetter> batch = new ArrayList<>();
+        DeadLetter entry;
+        while ((entry = buffer.poll()) != null) {
+            buffered.decrementAndGet();
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        StringBuilder payload = new StringBuilder(batch.size() * 256);
+        for (DeadLetter deadLetter : batch) {
+            try {
+                payload.append(objectMapper.writeValueAsString(deadLetter)).append('\n');
+            } catch (Exception e) {
+                log.error("Failed to serialize dead letter for {}", deadLetter.getSymbol(), e);
+            }
+        }
+        String query = "INSERT INTO " + database + ".ingestion_dead_letter FORMAT JSONEachRow";
+        try {
+            RestClient.RequestBodySpec request = clickhouseRestClient.post()
+                    .uri(uriBuilder -> uriBuilder.path("/")
+                            .queryParam("query", query)
+                            .build())
+                    .contentType(MediaType.parseMediaType("application/json; charset=UTF-8"));
+            if (!clickhouseUser.isBlank()) {
+                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            }
+            request.body(payload.toString())
+                    .retrieve()
+                    .toBodilessEntity();
+            log.info("Recorded {} dead letters", batch.size());
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to record {} dead letters (status={}): {}", batch.size(), ex.getStatusCode(), ex.getResponseBodyAsString());
+            batch.forEach(this::enqueue);
+        } catch (Exception ex) {
+            log.error("Failed to record {} dead letters", batch.size(), ex);
+            batch.forEach(this::enqueue);
+        }
+    }
+
+    /**
+     * Oldest unreplayed entries of the given kind that have been attempted fewer than {@code maxAttempts} times, with
+     * their current status from {@code ingestion_dead_letter_status}.
+     */
+    public List<DeadLetter> findPending(String kind, int limit, int maxAttempts) {
+        // status values only grow, so max() is exact whether or not the ReplacingMergeTree has merged yet
+        String query = "SELECT id, kind, symbol, security_id, exchange_segment, instrument_type, window_from, window_to, "
+                + "reason, payload, current_attempts AS attempts, current_replayed AS replayed, recorded_at FROM ("
+                + "SELECT d.id AS id, d.kind AS kind, d.symbol AS symbol, d.security_id AS security_id, "
+                + "d.exchange_segment AS exchange_segment, d.instrument_type AS instrument_type, "
+                + "d.window_from AS window_from, d.window_to AS window_to, d.reason AS reason, d.payload AS payload, "
+                + "greatest(d.attempts, s.status_attempts) AS current_attempts, "
+                + "greatest(d.replayed, s.status_replayed) AS current_replayed, d.recorded_at AS recorded_at "
+                + "FROM " + database + ".ingestion_dead_letter AS d LEFT JOIN (SELECT id, max(attempts) AS status_attempts, "
+                + "max(replayed) AS status_replayed FROM " + database + ".ingestion_dead_letter_status GROUP BY id) AS s "
+                + "ON d.id = s.id WHERE d.kind = '" + escapeSqlString(kind) + "') "
+                + "WHERE current_replayed = 0 AND current_attempts < " + maxAttempts
+                + " ORDER BY recorded_at LIMIT " + limit + " FORMAT JSONEachRow";
+        RestClient.RequestHeadersSpec<?> request = clickhouseRestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/")
+                        .queryParam("query", query)
+                        .build());
+        if (!clickhouseUser.isBlank()) {
+            request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+        }
+        String response;
+        try {
+            response = request.retrieve().body(String.class);
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to fetch dead letters (status={}): {}", ex.getStatusCode(), ex.getResponseBodyAsString());
+            return List.of();
+        } catch (Exception ex) {
+            log.error("Failed to fetch dead letters", ex);
+            return List.of();
+        }
+        if (response == null || response.isBlank()) {
+            return List.of();
+        }
+        List<DeadLetter> result = new ArrayList<>();
+        for (String row : response.trim().split("\\R")) {
+            try {
+                result.add(objectMapper.readValue(row, DeadLetter.class));
+            } catch (Exception e) {
+                log.warn("Failed to parse dead letter row: {}", row, e);
+            }
+        }
+        return result;
+    }
+
+    public void markReplayed(Collection<DeadLetter> entries) {
+        appendStatus(entries, false);
+    }
+
+    public void markAttempted(Collection<DeadLetter> entries) {
+        appendStatus(entries, true);
+    }
+
+    /**
+     * Appends each entry's new status (attempts as read by {@link #findPending}, plus one for a failed attempt) as one
+     * synchronous insert.
+     */
+    private void appendStatus(Collection<DeadLetter> entries, boolean attempted) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        StringBuilder payload = new StringBuilder(entries.size() * 64);
+        for (DeadLetter entry : entries) {
+            int attempts = entry.getAttempts() == null ? 0 : entry.getAttempts();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", entry.getId());
+            row.put("attempts", Math.min(attempted ? attempts + 1 : attempts, 255));
+            row.put("replayed", attempted ? 0 : 1);
+            try {
+                payload.append(objectMapper.writeValueAsString(row)).append('\n');
+            } catch (Exception e) {
+                log.error("Failed to serialize dead letter status for {}", entry.getId(), e);
+            }
+        }
+        String query = "INSERT INTO " + database + ".ingestion_dead_letter_status FORMAT JSONEachRow";
+        try {
+            RestClient.RequestBodySpec request = clickhouseRestClient.post()
+                    .uri(uriBuilder -> uriBuilder.path("/")
+                            .queryParam("query", query)
+                            .build())
+                    .contentType(MediaType.parseMediaType("application/json; charset=UTF-8"));
+            if (!clickhouseUser.isBlank()) {
+                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            }
+            request.body(payload.toString())
+                    .retrieve()
+                    .toBodilessEntity();
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to update {} dead letters (status={}): {}", entries.size(), ex.getStatusCode(), ex.getResponseBodyAsString());
+        } catch (Exception ex) {
+            log.error("Failed to update {} dead letters", entries.size(), ex);
+        }
+    }
+
+    private void enqueue(DeadLetter deadLetter) {
+        if (buffered.incrementAndGet() > maxBuffered) {
+            buffered.decrementAndGet();
+            log.error("Dead letter buffer full; dropping {} {} {} -> {}", deadLetter.getKind(), deadLetter.getSymbol(),
+                    deadLetter.getWindowFrom(), deadLetter.getWindowTo());
+            return;
+        }
+        if (deadLetter.getId() == null) {
+            deadLetter.setId(UUID.randomUUID().toString());
+        }
+        if (deadLetter.getReason() != null && deadLetter.getReason().length() > MAX_REASON_LENGTH) {
+            deadLetter.setReason(deadLetter.getReason().substring(0, MAX_REASON_LENGTH));
+        }
+        deadLetter.setWindowFrom(truncate(deadLetter.getWindowFrom()));
+        deadLetter.setWindowTo(truncate(deadLetter.getWindowTo()));
+        buffer.add(deadLetter);
+    }
+
+    private LocalDateTime truncate(LocalDateTime time) {
+        return time == null ? null : time.truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    private String escapeSqlString(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("'", "''");
+    }
+}
@@ -0,0 +1,83 @@
+package com.dhan.ingestion.repository;
+
+import com.dhan.ingestion.domain.FreshnessSnapshot;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes freshness-lag snapshots to {@code ingestion_freshness}.
+ */
+@Repository
+@Slf4j
+public class FreshnessRepository {
+
+    private static final DateTimeFormatter CLICKHOUSE_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final RestClient clickhouseRestClient;
+    private final ObjectMapper objectMapper;
+
+    @Value("${clickhouse.http.database:default}")
+    private String database;
+
+    @Value("${clickhouse.http.user:}")
+    private String clickhouseUser;
+
+    @Value("${clickhouse.http.password:}")
+    private String clickhousePassword;
+
+    public FreshnessRepository(@Qualifier("clickhouseRestClient") RestClient clickhouseRestClient) {
+        this.clickhouseRestClient = clickhouseRestClient;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        this.objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        var javaTimeModule = new JavaTimeModule();
+        javaTimeModule.addSerializer(LocalDateTime.class, new LocalDateTimeSerializer(CLICKHOUSE_TIME_FORMATTER));
+        this.objectMapper.registerModule(javaTimeModule);
+    }
+
+    public boolean insertSnapshots(List<FreshnessSnapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+        String query = "INSERT INTO " + database + ".ingestion_freshness FORMAT JSONEachRow";
+        try {
+            StringBuilder payload = new StringBuilder(snapshots.size() * 512);
+            for (FreshnessSnapshot snapshot : snapshots) {
+                payload.append(objectMapper.writeValueAsString(snapshot)).append('\n');
+            }
+            RestClient.RequestBodySpec request = clickhouseRestClient.post()
+                    .uri(uriBuilder -> uriBuilder.path("/")
+                            .queryParam("query", query)
+                            .build())
+                    .contentType(MediaType.parseMediaType("application/json; charset=UTF-8"));
+            if (!clickhouseUser.isBlank()) {
+                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            }
+            request.body(payload.toString())
+                    .retrieve()
+                    .toBodilessEntity();
+            return true;
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to write freshness snapshot (status={}): {}", ex.getStatusCode(), ex.getResponseBodyAsString());
+            return false;
+        } catch (Exception ex) {
+            log.error("Failed to write freshness snapshot", ex);
+            return false;
+        }
+    }
+}
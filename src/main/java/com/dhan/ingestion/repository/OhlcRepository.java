@@ -1,25 +1,40 @@
 package com.dhan.ingestion.repository;
 
+import com.dhan.ingestion.client.OhlcBatch;
 import com.dhan.ingestion.domain.OhlcData;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.dhan.ingestion.resilience.CircuitBreaker;
+import com.dhan.ingestion.resilience.CircuitBreakers;
+import com.dhan.ingestion.resilience.CircuitOpenException;
+import com.dhan.ingestion.resilience.InsertThrottle;
+import com.dhan.ingestion.telemetry.OhlcInsertEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientResponseException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,11 +42,24 @@ import java.util.regex.Pattern;
 @Slf4j
 public class OhlcRepository {
 
+    private interface RejectionHandler {
+        void rejected(int row, String reason);
+    }
+
     private static final DateTimeFormatter CLICKHOUSE_TIME_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final Pattern CLICKHOUSE_ROW_PATTERN = Pattern.compile("at row (\\d+)");
+    private static final String CLICKHOUSE_EXCEPTION_CODE_HEADER = "X-ClickHouse-Exception-Code";
+    private static final Set<String> REPLACING_RELATIONS = Set.of("dhan_ohlc", "dhan_ohlc_1m");
+    private static final Comparator<OhlcData> PARTITION_ORDER = Comparator
+            .comparingInt(OhlcRepository::partitionOf)
+            .thenComparing(OhlcData::getSym, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(OhlcData::getTime, Comparator.nullsFirst(Comparator.naturalOrder()));
 
     private final RestClient clickhouseRestClient;
+    private final DeadLetterRepository deadLetterRepository;
+    private final InsertThrottle insertThrottle;
+    private final CircuitBreaker circuitBreaker;
     private final ObjectMapper objectMapper;
 
     @Value("${clickhouse.http.database:default}")
@@ -43,38 +71,206 @@ public class OhlcRepository {
     @Value("${clickhouse.http.password:}")
     private String clickhousePassword;
 
-    public OhlcRepository(@Qualifier("clickhouseRestClient") RestClient clickhouseRestClient) {
+    @Value("${ingestion.insert.throttle.parts-poll-enabled:false}")
+    private boolean partsPollEnabled;
+
+    @Value("${ingestion.insert.split-by-partition:true}")
+    private boolean splitByPartition;
+
+    @Value("${ingestion.insert.deduplication-tokens:true}")
+    private boolean deduplicationTokens;
+
+    private final int maxRowRejections;
+    private final int overloadRetries;
+    private final Map<String, Boolean> quarantine;
+    private final PriceEncoding priceEncoding;
+
+    public OhlcRepository(@Qualifier("clickhouseRestClient") RestClient clickhouseRestClient,
+                          DeadLetterRepository deadLetterRepository,
+                          InsertThrottle insertThrottle,
+                          CircuitBreakers circuitBreakers,
+                          @Value("${ingestion.insert.max-row-rejections:100}") int maxRowRejections,
+                          @Value("${ingestion.insert.overload-retries:3}") int overloadRetries,
+                          @Value("${ingestion.insert.quarantine-size:10000}") int quarantineSize,
+                          @Value("${ingestion.price-encoding:float}") String priceEncoding) {
         this.clickhouseRestClient = clickhouseRestClient;
+        this.deadLetterRepository = deadLetterRepository;
+        this.insertThrottle = insertThrottle;
+        this.circuitBreaker = circuitBreakers.clickhouse();
         this.objectMapper = new ObjectMapper();
-        this.objectMapper.enable(SerializationFeature.WRITE_BIGDECIMAL_AS_PLAIN);
+        this.maxRowRejections = maxRowRejections;
+        this.overloadRetries = overloadRetries;
+        this.priceEncoding = PriceEncoding.parse(priceEncoding);
+        this.quarantine = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > quarantineSize;
+            }
+        });
+    }
+
+    public PriceEncoding priceEncoding() {
+        return priceEncoding;
+    }
+
+    /**
+     * Inserts the rows, excluding any that fail validation, are quarantined, or are rejected by ClickHouse.
+     * Rows are sent as one insert per monthly partition, sorted by {@code (sym, time)}, so each insert writes a
+     * single pre-sorted part in {@code dhan_ohlc} and in every materialized view target below it.
+     * Returns {@code false} when the batch could not be inserted, in which case the cursor must not advance.
+     */
+    public boolean batchInsertOhlc(List<OhlcData> data) {
+        // runs that landed before a failure carry the same token when re-sent, and dhan_ohlc replaces on (sym, time)
+        for (List<OhlcData> run : partitionRuns(data, insertThrottle.batchRows())) {
+            if (!insertChunk(run)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same contract as {@link #batchInsertOhlc}, serializing straight from the batch's primitive columns so no
+     * {@link OhlcData} or {@link BigDecimal} is built per bar. Validated batches are already in time order and are
+     * cut at month boundaries in place; anything else goes through the sorting path.
+     */
+    public boolean batchInsertBars(OhlcBatch bars) {
+        long[] times = bars.epochSeconds();
+        int size = bars.size();
+        for (int i = 1; i < size; i++) {
+            if (times[i] < times[i - 1]) {
+                return batchInsertOhlc(bars.rows());
+            }
+        }
+        int batchRows = insertThrottle.batchRows();
+        int from = 0;
+        while (from < size) {
+            long partitionEnd = splitByPartition ? OhlcBatch.nextMonthStart(times[from]) : Long.MAX_VALUE;
+            int to = from + 1;
+            while (to < size && to - from < batchRows && times[to] < partitionEnd) {
+                to++;
+            }
+            if (!insertChunk(bars, from, to)) {
+                return false;
+            }
+            from = to;
+        }
+        return true;
     }
 
-    public void batchInsertOhlc(List<OhlcData> data) {
+    private boolean insertChunk(List<OhlcData> data) {
         if (data.isEmpty()) {
-            return;
+            return true;
         }
+        OhlcInsertEvent event = beginInsert();
+        long serializeStart = System.nanoTime();
+        RowBatch batch = serializeRows(data);
+        return insertChunk(batch, event, System.nanoTime() - serializeStart);
+    }
 
-        insertBatch(data);
+    private boolean insertChunk(OhlcBatch bars, int from, int to) {
+        OhlcInsertEvent event = beginInsert();
+        long serializeStart = System.nanoTime();
+        RowBatch batch = serializeBars(bars, from, to);
+        return insertChunk(batch, event, System.nanoTime() - serializeStart);
     }
 
-    private void insertBatch(List<OhlcData> batch) {
-        if (batch.isEmpty()) {
-            return;
+    private boolean insertChunk(RowBatch batch, OhlcInsertEvent event, long serializeNanos) {
+        if (batch.rowCount() == 0) {
+            return true;
         }
-        if (batch.size() == 1) {
-            sendSingleRow(batch.getFirst());
-            return;
+        return sendBatch(batch, priceEncoding.relation("dhan_ohlc"), insertQuery(), null, event, serializeNanos, (row, reason) -> {
+            String key = batch.rowKey(row);
+            quarantine.put(key, Boolean.TRUE);
+            int separator = key.lastIndexOf('|');
+            deadLetterRepository.recordRow(key.substring(0, separator),
+                    LocalDateTime.parse(key.substring(separator + 1), CLICKHOUSE_TIME_FORMATTER),
+                    batch.rowText(row), reason);
+        });
+    }
+
+    /**
+     * Re-inserts raw JSONEachRow lines from the dead-letter store in one batch. Returns the indexes of lines that
+     * were rejected again, or empty if the batch itself failed.
+     */
+    public Optional<BitSet> insertRawRows(List<String> rows) {
+        BitSet rejected = new BitSet(rows.size());
+        OhlcInsertEvent event = beginInsert();
+        long serializeStart = System.nanoTime();
+        RowBatch batch = new RowBatch(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            String row = rows.get(i) == null ? "" : rows.get(i).strip();
+            if (!row.startsWith("{") || !row.endsWith("}") || row.indexOf('\n') >= 0) {
+                rejected.set(i);
+                continue;
+            }
+            batch.appendRow(String.valueOf(i), row.getBytes(StandardCharsets.UTF_8));
         }
-        if (sendBatch(batch)) {
-            return;
+        long serializeNanos = System.nanoTime() - serializeStart;
+        if (batch.rowCount() == 0) {
+            return Optional.of(rejected);
+        }
+        boolean inserted = sendBatch(batch, priceEncoding.relation("dhan_ohlc"), insertQuery(), null, event, serializeNanos,
+                (row, reason) -> rejected.set(Integer.parseInt(batch.rowKey(row))));
+        return inserted ? Optional.of(rejected) : Optional.empty();
+    }
+
+    /**
+     * Aggregates coarse bars into a rollup {@code *_state} table, bucketing by {@code bucketInterval} (e.g.
+     * {@code INTERVAL 1 DAY}) exactly as the table's materialized view does for 1m bars. Bars rejected by ClickHouse
+     * are skipped; retries with the same {@code deduplicationToken} are dropped by tables with a deduplication window.
+     */
+    public boolean insertRollupStates(String stateTable, String bucketInterval, List<OhlcData> bars,
+                                      String deduplicationToken) {
+        List<List<OhlcData>> runs = partitionRuns(bars, Integer.MAX_VALUE);
+        for (int i = 0; i < runs.size(); i++) {
+            // one insert per partition; a retry splits the same bars the same way, so the derived tokens repeat
+            String token = deduplicationToken == null || runs.size() == 1 ? deduplicationToken : deduplicationToken + "-" + i;
+            if (!insertRollupRun(stateTable, bucketInterval, runs.get(i), token)) {
+                return false;
+            }
         }
-        int mid = batch.size() / 2;
-        insertBatch(batch.subList(0, mid));
-        insertBatch(batch.subList(mid, batch.size()));
+        return true;
     }
 
-    public Optional<LocalDateTime> getLastOhlcTime(String symbol) {
-        String query = "SELECT max(time) FROM " + database + ".dhan_ohlc WHERE sym = '" + escapeSqlString(symbol) + "'";
+    private boolean insertRollupRun(String stateTable, String bucketInterval, List<OhlcData> bars,
+                                    String deduplicationToken) {
+        String table = priceEncoding.relation(stateTable);
+        OhlcInsertEvent event = beginInsert();
+        long serializeStart = System.nanoTime();
+        RowBatch batch = serializeRows(bars);
+        long serializeNanos = System.nanoTime() - serializeStart;
+        if (batch.rowCount() == 0) {
+            return true;
+        }
+        String price = priceEncoding.priceType();
+        String query = "INSERT INTO " + database + "." + table
+                + " SELECT sym, toStartOfInterval(bar_time, " + bucketInterval + ") AS ts,"
+                + " argMinState(open, bar_time), maxState(high), minState(low), argMaxState(close, bar_time), sumState(volume)"
+                + " FROM (SELECT sym, toDateTime(time, 'Asia/Kolkata') AS bar_time, open, high, low, close, volume"
+                + " FROM input('sym String, time String, open " + price + ", high " + price + ", low " + price
+                + ", close " + price + ", volume UInt64'))"
+                + " GROUP BY sym, ts FORMAT JSONEachRow";
+        return sendBatch(batch, table, query, deduplicationToken, event, serializeNanos, (row, reason) -> { });
+    }
+
+    /**
+     * Earliest 1m bar per symbol; deep backfill stays strictly below it so rollups are never counted twice.
+     */
+    public Optional<Map<String, LocalDateTime>> findFirstBarTimes() {
+        return findBarTimes("min");
+    }
+
+    /**
+     * Latest 1m bar per symbol in one {@code GROUP BY sym} pass over the {@code (sym, time)} key.
+     */
+    public Optional<Map<String, LocalDateTime>> findLastBarTimes() {
+        return findBarTimes("max");
+    }
+
+    private Optional<Map<String, LocalDateTime>> findBarTimes(String aggregate) {
+        String query = "SELECT sym, " + aggregate + "(time) FROM " + database + "." + priceEncoding.relation("dhan_ohlc")
+                + " GROUP BY sym FORMAT TabSeparated";
         try {
             RestClient.RequestHeadersSpec<?> request = clickhouseRestClient.get()
                     .uri(uriBuilder -> uriBuilder.path("/")
@@ -83,239 +279,461 @@ public class OhlcRepository {
             if (!clickhouseUser.isBlank()) {
                 request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
             }
-            String response = request.retrieve().body(String.class);
-            if (response == null) {
-                return Optional.empty();
+            String response = exchange(request, String.class);
+            Map<String, LocalDateTime> result = new HashMap<>();
+            if (response == null || response.isBlank()) {
+                return Optional.of(result);
             }
-            String trimmed = response.trim();
-            if (trimmed.isEmpty() || trimmed.equals("\\N")) {
-                return Optional.empty();
+            for (String line : response.trim().split("\\R")) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    result.put(line.substring(0, tab), LocalDateTime.parse(line.substring(tab + 1), CLICKHOUSE_TIME_FORMATTER));
+                }
             }
-            return Optional.of(LocalDateTime.parse(trimmed.replace(" ", "T")));
-        } catch (Exception e) {
+            return Optional.of(result);
+        } catch (CircuitOpenException ex) {
+            log.warn("Skipped {} bar times query: {}", aggregate, ex.getMessage());
+            return Optional.empty();
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to query {} bar times (status={}): {}", aggregate, ex.getStatusCode(), ex.getResponseBodyAsString());
+            return Optional.empty();
+        } catch (Exception ex) {
+            log.error("Failed to query {} bar times", aggregate, ex);
             return Optional.empty();
         }
     }
 
-    private String serializeRows(List<OhlcData> data) {
-        List<String> rows = new ArrayList<>(data.size());
-        for (OhlcData ohlc : data) {
-            String row = serializeRow(ohlc);
-            if (row != null) {
-                rows.add(row);
+    /**
+     * Reports the active part count of the busiest {@code dhan_ohlc} partition and the running merges to the insert
+     * throttle, so inserts slow down before ClickHouse starts delaying or rejecting them.
+     */
+    @Scheduled(fixedDelayString = "${ingestion.insert.throttle.parts-poll-ms:10000}",
+            initialDelayString = "${ingestion.insert.throttle.parts-poll-ms:10000}")
+    public void pollPartPressure() {
+        if (!partsPollEnabled || circuitBreaker.isRejecting()) {
+            return;
+        }
+        String filter = "database = '" + escapeSqlString(database) + "' AND table = '"
+                + priceEncoding.relation("dhan_ohlc") + "'";
+        String query = "SELECT (SELECT max(c) FROM (SELECT count() AS c FROM system.parts WHERE " + filter
+                + " AND active GROUP BY partition_id)), (SELECT count() FROM system.merges WHERE " + filter
+                + ") FORMAT TabSeparated";
+        try {
+            RestClient.RequestHeadersSpec<?> request = clickhouseRestClient.get()
+                    .uri(uriBuilder -> uriBuilder.path("/")
+                            .queryParam("query", query)
+                            .build());
+            if (!clickhouseUser.isBlank()) {
+                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            }
+            String response = exchange(request, String.class);
+            if (response == null || response.isBlank()) {
+                return;
+            }
+            String[] fields = response.trim().split("\t");
+            if (fields.length == 2) {
+                insertThrottle.onPartPressure(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]));
             }
+        } catch (CircuitOpenException ex) {
+            log.debug("Skipped dhan_ohlc part pressure poll: {}", ex.getMessage());
+        } catch (RestClientResponseException ex) {
+            log.warn("Failed to poll dhan_ohlc part pressure (status={}): {}", ex.getStatusCode(), ex.getResponseBodyAsString());
+        } catch (Exception ex) {
+            log.warn("Failed to poll dhan_ohlc part pressure: {}", ex.getMessage());
         }
-        return String.join("\n", rows);
     }
 
-    private boolean isValidJsonEachRowLine(String row) {
-        if (row == null || row.isBlank()) {
+    /**
+     * Receives a query result as ClickHouse sends it.
+     */
+    @FunctionalInterface
+    public interface ResultConsumer {
+        void accept(InputStream body) throws IOException;
+    }
+
+    /**
+     * Reads bars from a {@code dhan_ohlc*} relation (mapped to the configured price layout), prices in rupees, and
+     * hands the response body to {@code consumer} once ClickHouse has answered. The symbol and bounds travel as query
+     * parameters, never as SQL text. Returns {@code false} when the query failed before {@code consumer} was called;
+     * a failure while streaming is rethrown as an {@link IOException}.
+     */
+    public boolean streamOhlc(String relation, String symbol, LocalDateTime from, LocalDateTime to, String format,
+                              ResultConsumer consumer) throws IOException {
+        // the 1m tables are ReplacingMergeTrees that may still hold re-fetched copies of a bar until they merge; the
+        // rollup views aggregate per bucket already. Copies share (sym, time) and so a monthly partition.
+        boolean replacing = REPLACING_RELATIONS.contains(relation);
+        String query = "SELECT sym, time, " + priceEncoding.rupees("open") + ", " + priceEncoding.rupees("high")
+                + ", " + priceEncoding.rupees("low") + ", " + priceEncoding.rupees("close") + ", volume FROM "
+                + database + "." + priceEncoding.relation(relation) + (replacing ? " FINAL" : "")
+                + " WHERE sym = {sym:String} AND time >= {from:DateTime} AND time < {to:DateTime}"
+                + " ORDER BY time"
+                + (replacing ? " SETTINGS do_not_merge_across_partitions_select_final = 1" : "")
+                + " FORMAT " + format;
+        boolean[] streaming = new boolean[1];
+        try {
+            circuitBreaker.acquire();
+            RestClient.RequestHeadersSpec<?> request = clickhouseRestClient.get()
+                    .uri(uriBuilder -> uriBuilder.path("/")
+                            .queryParam("query", "{query}")
+                            .queryParam("param_sym", "{sym}")
+                            .queryParam("param_from", "{from}")
+                            .queryParam("param_to", "{to}")
+                            .build(query, symbol, from.format(CLICKHOUSE_TIME_FORMATTER),
+                                    to.format(CLICKHOUSE_TIME_FORMATTER)));
+            if (!clickhouseUser.isBlank()) {
+                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            }
+            request.exchange((clientRequest, response) -> {
+                if (response.getStatusCode().isError()) {
+                    throw new RestClientResponseException("ClickHouse query failed", response.getStatusCode(),
+                            response.getStatusText(), response.getHeaders(), response.getBody().readAllBytes(),
+                            StandardCharsets.UTF_8);
+                }
+                circuitBreaker.onSuccess();
+                streaming[0] = true;
+                consumer.accept(response.getBody());
+                return null;
+            });
+            return true;
+        } catch (CircuitOpenException ex) {
+            log.warn("Skipped {} query for {}: {}", relation, symbol, ex.getMessage());
+            return false;
+        } catch (RuntimeException ex) {
+            if (streaming[0]) {
+                throw new IOException("Streaming " + relation + " for " + symbol + " failed", ex);
+            }
+            circuitBreaker.onError(ex);
+            if (ex instanceof RestClientResponseException response) {
+                log.error("Failed to query {} for {} (status={}): {}", relation, symbol, response.getStatusCode(),
+                        response.getResponseBodyAsString());
+            } else {
+                log.error("Failed to query {} for {}", relation, symbol, ex);
+            }
             return false;
         }
-        return row.indexOf('\u0000') < 0 && row.indexOf('\n') < 0 && row.indexOf('\r') < 0
-                && row.startsWith("{") && row.endsWith("}");
     }
 
-    private String extractSymbolHint(String row) {
-        if (row == null) {
-            return "?";
-        }
-        int symIndex = row.indexOf("\"sym\"");
-        if (symIndex < 0) {
-            return "?";
-        }
-        int colonIndex = row.indexOf(':', symIndex);
-        if (colonIndex < 0) {
-            return "?";
-        }
-        int quoteStart = row.indexOf('"', colonIndex + 1);
-        if (quoteStart < 0) {
-            return "?";
-        }
-        int quoteEnd = row.indexOf('"', quoteStart + 1);
-        if (quoteEnd < 0) {
-            return "?";
+    /**
+     * Orders rows by {@code (toYYYYMM(time), sym, time)} and cuts them into runs that stay within one monthly
+     * partition (unless {@code split-by-partition} is off) and {@code maxRows}. Rows without a time sort first and
+     * are dropped later by validation.
+     */
+    private List<List<OhlcData>> partitionRuns(List<OhlcData> data, int maxRows) {
+        if (data.isEmpty()) {
+            return List.of();
+        }
+        List<OhlcData> sorted = new ArrayList<>(data);
+        sorted.sort(PARTITION_ORDER);
+        List<List<OhlcData>> runs = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= sorted.size(); i++) {
+            if (i == sorted.size() || i - from >= maxRows
+                    || (splitByPartition && partitionOf(sorted.get(i)) != partitionOf(sorted.get(from)))) {
+                runs.add(sorted.subList(from, i));
+                from = i;
+            }
         }
-        return row.substring(quoteStart + 1, quoteEnd);
+        return runs;
     }
 
-    private boolean handleClickhouseRowError(byte[] payloadBytes, RestClientResponseException ex) {
-        String body = ex.getResponseBodyAsString();
-        Matcher matcher = CLICKHOUSE_ROW_PATTERN.matcher(body);
-        if (!matcher.find()) {
-            return false;
-        }
-        int rowIndex;
+    private static int partitionOf(OhlcData ohlc) {
+        LocalDateTime time = ohlc.getTime();
+        return time == null ? -1 : time.getYear() * 100 + time.getMonthValue();
+    }
+
+    /**
+     * Runs a read through the ClickHouse circuit breaker.
+     */
+    private <T> T exchange(RestClient.RequestHeadersSpec<?> request, Class<T> type) {
+        circuitBreaker.acquire();
         try {
-            rowIndex = Integer.parseInt(matcher.group(1));
-        } catch (NumberFormatException ignored) {
-            return false;
-        }
-        String payload = new String(payloadBytes, StandardCharsets.UTF_8);
-        String[] lines = payload.split("\n", -1);
-        if (rowIndex <= 0 || rowIndex > lines.length) {
-            return false;
-        }
-        String badLine = lines[rowIndex - 1];
-        String cleaned = badLine == null ? "" : badLine.replace("\u0000", "");
-        if (!isValidJsonEachRowLine(cleaned) || !isValidJsonObjectLine(cleaned)) {
-            log.warn("Dropping bad row {} due to ClickHouse parse error (sym hint: {})", rowIndex, extractSymbolHint(cleaned));
-            return true;
+            T body = request.retrieve().body(type);
+            circuitBreaker.onSuccess();
+            return body;
+        } catch (RuntimeException ex) {
+            circuitBreaker.onError(ex);
+            throw ex;
         }
-        StringBuilder rebuilt = new StringBuilder(payload.length());
-        for (int i = 0; i < lines.length; i++) {
-            if (i == rowIndex - 1) {
-                continue;
-            }
-            if (!rebuilt.isEmpty()) {
-                rebuilt.append('\n');
+    }
+
+    /**
+     * Starts the insert event before serialization; its fields are only filled in if it is going to be committed.
+     */
+    private OhlcInsertEvent beginInsert() {
+        OhlcInsertEvent event = new OhlcInsertEvent();
+        event.begin();
+        return event;
+    }
+
+    private RowBatch serializeRows(List<OhlcData> data) {
+        RowBatch batch = new RowBatch(data.size());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(batch.output())) {
+            generator.setRootValueSeparator(null);
+            for (OhlcData ohlc : data) {
+                String sym = sanitizeString(ohlc.getSym());
+                String time = ohlc.getTime() == null ? null : ohlc.getTime().format(CLICKHOUSE_TIME_FORMATTER);
+                if (!isValidRow(ohlc, sym, time)) {
+                    continue;
+                }
+                String key = sym + '|' + time;
+                if (quarantine.containsKey(key)) {
+                    log.debug("Skipping quarantined OHLC row {}", key);
+                    continue;
+                }
+                writeRow(generator, ohlc, sym, time);
+                generator.flush();
+                batch.endRow(key);
             }
-            rebuilt.append(lines[i]);
+        } catch (IOException e) {
+            log.error("Failed to serialize OHLC batch", e);
         }
-        byte[] retryBytes = rebuilt.toString().getBytes(StandardCharsets.UTF_8);
-        log.warn("Retrying ClickHouse insert after dropping row {}", rowIndex);
-        try {
-            String query = "INSERT INTO " + database + ".dhan_ohlc FORMAT JSONEachRow";
-            RestClient.RequestBodySpec retryRequest = clickhouseRestClient.post()
-                    .uri(uriBuilder -> uriBuilder.path("/")
-                            .queryParam("query", query)
-                            .build())
-                    .contentType(MediaType.parseMediaType("application/json; charset=UTF-8"));
-            if (!clickhouseUser.isBlank()) {
-                retryRequest = retryRequest.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+        return batch;
+    }
+
+    private RowBatch serializeBars(OhlcBatch bars, int from, int to) {
+        RowBatch batch = new RowBatch(to - from);
+        String sym = sanitizeString(bars.symbol());
+        if (sym == null || sym.isBlank()) {
+            log.warn("Dropping {} OHLC bars with a missing symbol", to - from);
+            return batch;
+        }
+        long[] times = bars.epochSeconds();
+        double[] open = bars.open();
+        double[] high = bars.high();
+        double[] low = bars.low();
+        double[] close = bars.close();
+        long[] volume = bars.volume();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(batch.output())) {
+            generator.setRootValueSeparator(null);
+            for (int i = from; i < to; i++) {
+                String time = OhlcBatch.marketTime(times[i]).format(CLICKHOUSE_TIME_FORMATTER);
+                if (!(Double.isFinite(open[i]) && Double.isFinite(high[i]) && Double.isFinite(low[i])
+                        && Double.isFinite(close[i])) || volume[i] < 0) {
+                    log.warn("Dropping OHLC row with invalid fields: sym={} time={} open={} high={} low={} close={} volume={}",
+                            sym, time, open[i], high[i], low[i], close[i], volume[i]);
+                    continue;
+                }
+                String key = sym + '|' + time;
+                if (quarantine.containsKey(key)) {
+                    log.debug("Skipping quarantined OHLC row {}", key);
+                    continue;
+                }
+                generator.writeStartObject();
+                generator.writeStringField("sym", sym);
+                writePrice(generator, "open", open[i]);
+                writePrice(generator, "high", high[i]);
+                writePrice(generator, "low", low[i]);
+                writePrice(generator, "close", close[i]);
+                generator.writeNumberField("volume", volume[i]);
+                generator.writeStringField("time", time);
+                generator.writeEndObject();
+                generator.flush();
+                batch.endRow(key);
             }
-            retryRequest.body(retryBytes)
-                    .retrieve()
-                    .toBodilessEntity();
-            return true;
-        } catch (Exception retryEx) {
-            log.error("Retry insert failed after dropping row {}", rowIndex, retryEx);
-            return false;
+        } catch (IOException e) {
+            log.error("Failed to serialize OHLC batch", e);
         }
+        return batch;
     }
 
-    private boolean isValidJsonObjectLine(String row) {
-        if (!isValidJsonEachRowLine(row)) {
-            return false;
+    private void writePrice(JsonGenerator generator, String field, double price) throws IOException {
+        if (priceEncoding == PriceEncoding.TICKS) {
+            generator.writeNumberField(field, priceEncoding.toTicks(price));
+        } else {
+            generator.writeNumberField(field, price);
         }
-        try {
-            return objectMapper.readTree(row).isObject();
-        } catch (Exception e) {
-            return false;
+    }
+
+    private void writePrice(JsonGenerator generator, String field, BigDecimal price) throws IOException {
+        generator.writeFieldName(field);
+        if (priceEncoding == PriceEncoding.TICKS) {
+            generator.writeNumber(priceEncoding.toTicks(price));
+        } else {
+            generator.writeNumber(toNumber(price).toPlainString());
         }
     }
 
-    private boolean sendBatch(List<OhlcData> batch) {
-        String payload = serializeRows(batch);
-        if (payload.isBlank()) {
-            return true;
+    private boolean isValidRow(OhlcData ohlc, String sym, String time) {
+        if (sym == null || sym.isBlank() || time == null) {
+            log.warn("Dropping OHLC row with missing fields: sym={} time={}", sym, time);
+            return false;
         }
-        String[] lines = payload.split("\n");
-        int lineNumber = 0;
-        StringBuilder sanitized = new StringBuilder(payload.length());
-        for (String line : lines) {
-            lineNumber++;
-            if (!isValidJsonEachRowLine(line)) {
-                log.warn("Dropping invalid JSONEachRow line {} in batch (sym hint: {})", lineNumber, extractSymbolHint(line));
-                continue;
-            }
-            if (!sanitized.isEmpty()) {
-                sanitized.append('\n');
-            }
-            sanitized.append(line);
+        if (ohlc.getOpen() == null || ohlc.getHigh() == null || ohlc.getLow() == null || ohlc.getClose() == null
+                || ohlc.getVolume() == null) {
+            log.warn("Dropping OHLC row with missing fields: sym={} time={} open={} high={} low={} close={} volume={}",
+                    sym, time, ohlc.getOpen(), ohlc.getHigh(), ohlc.getLow(), ohlc.getClose(), ohlc.getVolume());
+            return false;
         }
-        if (sanitized.isEmpty()) {
-            return true;
+        if (ohlc.getVolume() < 0) {
+            log.warn("Dropping OHLC row with negative volume: sym={} time={} volume={}", sym, time, ohlc.getVolume());
+            return false;
         }
-        byte[] payloadBytes = sanitized.toString().getBytes(StandardCharsets.UTF_8);
-        String query = "INSERT INTO " + database + ".dhan_ohlc FORMAT JSONEachRow";
+        return true;
+    }
+
+    private void writeRow(JsonGenerator generator, OhlcData ohlc, String sym, String time) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("sym", sym);
+        writePrice(generator, "open", ohlc.getOpen());
+        writePrice(generator, "high", ohlc.getHigh());
+        writePrice(generator, "low", ohlc.getLow());
+        writePrice(generator, "close", ohlc.getClose());
+        generator.writeNumberField("volume", ohlc.getVolume());
+        generator.writeStringField("time", time);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Streams the live rows of the batch under an {@link InsertThrottle} permit. A row reported by ClickHouse as
+     * unparsable is excluded and handed to {@code onRejected}, and the same buffer is re-sent without it; overload
+     * responses are re-sent after the throttle's back-off, and any other failure fails the batch. Without an explicit
+     * {@code deduplicationToken} each attempt carries a {@link #contentToken}, so a re-send of rows that already
+     * landed is dropped by ClickHouse. Throws {@link CircuitOpenException}, with nothing sent, while the ClickHouse
+     * circuit breaker is open.
+     */
+    private boolean sendBatch(RowBatch batch, String table, String query, String deduplicationToken,
+                              OhlcInsertEvent event, long serializeNanos, RejectionHandler onRejected) {
+        long sendNanos = 0;
+        long recoveryNanos = 0;
+        int rejected = 0;
+        int overloads = 0;
+        int attempts = 0;
+        boolean inserted = false;
         try {
-            RestClient.RequestBodySpec request = clickhouseRestClient.post()
-                    .uri(uriBuilder -> uriBuilder.path("/")
-                            .queryParam("query", query)
-                            .build())
-                    .contentType(MediaType.parseMediaType("application/json; charset=UTF-8"));
-            if (!clickhouseUser.isBlank()) {
-                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            while (batch.liveRowCount() > 0) {
+                String token = deduplicationToken != null || !deduplicationTokens ? deduplicationToken : contentToken(batch);
+                circuitBreaker.acquire();
+                InsertThrottle.Permit permit;
+                try {
+                    permit = insertThrottle.acquire();
+                } catch (InterruptedException e) {
+                    circuitBreaker.onNeutral();
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                long sendStart = System.nanoTime();
+                attempts++;
+                try (permit) {
+                    RestClient.RequestBodySpec request = clickhouseRestClient.post()
+                            .uri(uriBuilder -> {
+                                uriBuilder.path("/").queryParam("query", query);
+                                if (token != null) {
+                                    uriBuilder.queryParam("insert_deduplication_token", token);
+                                }
+                                return uriBuilder.build();
+                            })
+                            .contentType(MediaType.parseMediaType("application/json; charset=UTF-8"))
+                            .contentLength(batch.liveBytes());
+                    if (!clickhouseUser.isBlank()) {
+                        request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+                    }
+                    request.body(batch::writeTo)
+                            .retrieve()
+                            .toBodilessEntity();
+                    insertThrottle.onSuccess(System.nanoTime() - sendStart, batch.liveRowCount());
+                    circuitBreaker.onSuccess();
+                    log.debug("Inserted {} rows: {}", batch.liveRowCount(), query);
+                    inserted = true;
+                    return true;
+                } catch (RestClientResponseException ex) {
+                    String body = ex.getResponseBodyAsString();
+                    int row = rejectedRow(batch, body);
+                    if (row < 0) {
+                        String exceptionCode = ex.getResponseHeaders() == null ? null
+                                : ex.getResponseHeaders().getFirst(CLICKHOUSE_EXCEPTION_CODE_HEADER);
+                        InsertThrottle.Overload overload = InsertThrottle.classify(ex.getStatusCode().value(), exceptionCode, body);
+                        if (overload != null && overloads++ < overloadRetries) {
+                            // overload is the throttle's to handle, not an outage
+                            circuitBreaker.onNeutral();
+                            insertThrottle.onOverload(overload, firstLine(body));
+                            continue;
+                        }
+                        circuitBreaker.onError(ex);
+                        log.error("Failed to insert {} rows (status={}): {} | query={}",
+                                batch.liveRowCount(), ex.getStatusCode(), body, query);
+                        return false;
+                    }
+                    circuitBreaker.onNeutral();
+                    if (++rejected > maxRowRejections) {
+                        log.error("Giving up on batch of {} rows after {} rejected rows", batch.rowCount(), maxRowRejections);
+                        return false;
+                    }
+                    batch.exclude(row);
+                    onRejected.rejected(row, firstLine(body));
+                    log.warn("Excluded OHLC row {} rejected by ClickHouse; retrying without it | row={}",
+                            batch.rowKey(row), batch.rowText(row));
+                } catch (ResourceAccessException ex) {
+                    circuitBreaker.onError(ex);
+                    if (overloads++ < overloadRetries) {
+                        insertThrottle.onOverload(InsertThrottle.Overload.SERVER, String.valueOf(ex.getMessage()));
+                        continue;
+                    }
+                    log.error("Failed to insert {} rows | query={}", batch.liveRowCount(), query, ex);
+                    return false;
+                } catch (Exception ex) {
+                    circuitBreaker.onError(ex);
+                    log.error("Failed to insert {} rows | query={}", batch.liveRowCount(), query, ex);
+                    return false;
+                } finally {
+                    if (attempts == 1) {
+                        sendNanos = System.nanoTime() - sendStart;
+                    } else {
+                        recoveryNanos += System.nanoTime() - sendStart;
+                    }
+                }
             }
-            request.body(payloadBytes)
-                    .retrieve()
-                    .toBodilessEntity();
-            log.debug("Inserted {} rows into dhan_ohlc", batch.size());
+            inserted = true;
             return true;
-        } catch (RestClientResponseException ex) {
-            if (handleClickhouseRowError(payloadBytes, ex)) {
-                return true;
+        } finally {
+            if (event.shouldCommit()) {
+                event.table = table;
+                String firstKey = batch.firstLiveKey();
+                String lastKey = batch.lastLiveKey();
+                int firstSeparator = firstKey == null ? -1 : firstKey.lastIndexOf('|');
+                if (firstSeparator > 0) {
+                    event.symbol = firstKey.substring(0, firstSeparator);
+                    event.firstBar = firstKey.substring(firstSeparator + 1);
+                    event.lastBar = lastKey.substring(lastKey.lastIndexOf('|') + 1);
+                }
+                event.serialize = serializeNanos;
+                event.send = sendNanos;
+                event.recovery = recoveryNanos;
+                event.rows = batch.liveRowCount();
+                event.rejectedRows = rejected;
+                event.bytes = batch.liveBytes();
+                event.success = inserted;
+                event.commit();
             }
-            log.error("Failed to insert {} rows into dhan_ohlc (status={}): {}", batch.size(), ex.getStatusCode(), ex.getResponseBodyAsString());
-            return false;
-        } catch (Exception ex) {
-            log.error("Failed to insert {} rows into dhan_ohlc", batch.size(), ex);
-            return false;
         }
     }
 
-    private void sendSingleRow(OhlcData ohlc) {
-        String row = serializeRow(ohlc);
-        if (row == null || row.isBlank()) {
-            return;
-        }
-        if (!isValidJsonEachRowLine(row)) {
-            log.warn("Dropping invalid JSONEachRow line for {}", ohlc.getSym());
-            return;
-        }
-        byte[] rowBytes = row.getBytes(StandardCharsets.UTF_8);
-        String query = "INSERT INTO " + database + ".dhan_ohlc FORMAT JSONEachRow";
-        try {
-            RestClient.RequestBodySpec request = clickhouseRestClient.post()
-                    .uri(uriBuilder -> uriBuilder.path("/")
-                            .queryParam("query", query)
-                            .build())
-                    .contentType(MediaType.parseMediaType("application/json; charset=UTF-8"));
-            if (!clickhouseUser.isBlank()) {
-                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
-            }
-            request.body(rowBytes)
-                    .retrieve()
-                    .toBodilessEntity();
-        } catch (RestClientResponseException ex) {
-            log.error("Failed to insert OHLC row for {} (status={}): {} | row={}", ohlc.getSym(), ex.getStatusCode(), ex.getResponseBodyAsString(), row);
-        } catch (Exception ex) {
-            log.error("Failed to insert OHLC row for {} | row={}", ohlc.getSym(), row, ex);
-        }
+    /**
+     * Deterministic {@code insert_deduplication_token} for the rows about to be sent: the first and last row keys
+     * ({@code sym|time}, i.e. symbol and window), the row count and a digest of the exact payload. Retries and re-runs
+     * of the same rows repeat it; excluding a rejected row changes it.
+     */
+    private static String contentToken(RowBatch batch) {
+        return batch.firstLiveKey() + '~' + batch.lastLiveKey() + '#' + batch.liveRowCount() + '#' + batch.liveDigest();
     }
 
-    private String serializeRow(OhlcData ohlc) {
-        String time = ohlc.getTime() == null ? null : ohlc.getTime().format(CLICKHOUSE_TIME_FORMATTER);
-        time = sanitizeString(time);
-        String sym = sanitizeString(ohlc.getSym());
-        if (sym == null || sym.isBlank() || time == null || time.isBlank()) {
-            log.warn("Dropping OHLC row with missing fields: sym={} time={}", sym, time);
-            return null;
-        }
-        BigDecimal open = toNumber(ohlc.getOpen());
-        BigDecimal high = toNumber(ohlc.getHigh());
-        BigDecimal low = toNumber(ohlc.getLow());
-        BigDecimal close = toNumber(ohlc.getClose());
-        Long volume = ohlc.getVolume();
-        if (open == null || high == null || low == null || close == null || volume == null) {
-            log.warn("Dropping OHLC row with missing fields: sym={} time={} open={} high={} low={} close={} volume={}",
-                    sym, time, open, high, low, close, volume);
-            return null;
+    private String insertQuery() {
+        return "INSERT INTO " + database + "." + priceEncoding.relation("dhan_ohlc") + " FORMAT JSONEachRow";
+    }
+
+    private String firstLine(String body) {
+        int newline = body.indexOf('\n');
+        return newline < 0 ? body.strip() : body.substring(0, newline).strip();
+    }
+
+    private int rejectedRow(RowBatch batch, String body) {
+        Matcher matcher = CLICKHOUSE_ROW_PATTERN.matcher(body);
+        if (!matcher.find()) {
+            return -1;
         }
-        LinkedHashMap<String, Object> row = new LinkedHashMap<>();
-        row.put("sym", sym);
-        row.put("open", open);
-        row.put("high", high);
-        row.put("low", low);
-        row.put("close", close);
-        row.put("volume", volume);
-        row.put("time", time);
         try {
-            return objectMapper.writeValueAsString(row);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize OHLC row for {}", sym, e);
-            return null;
+            return batch.rowAtSentPosition(Integer.parseInt(matcher.group(1)));
+        } catch (NumberFormatException ignored) {
+            return -1;
         }
     }
 
@@ -330,7 +748,7 @@ public class OhlcRepository {
         if (value == null) {
             return "";
         }
-        return value.replace("'", "''");
+        return value.replace("\\", "\\\\").replace("'", "''");
     }
 
     private String sanitizeString(String value) {
@@ -0,0 +1,71 @@
+package com.dhan.ingestion.repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * How OHLC prices are stored. {@code FLOAT} is the original {@code dhan_ohlc*} layout with Float32 prices;
+ * {@code TICKS} writes Int64 paise to the {@code dhan_ohlc_ticks*} tables (V8), which stay exact at any price level
+ * and compress better. Callers name relations by their {@code dhan_ohlc*} name and {@link #relation} maps them.
+ */
+public enum PriceEncoding {
+    FLOAT("dhan_ohlc", "Float32"),
+    TICKS("dhan_ohlc_ticks", "Int64");
+
+    public static final int TICKS_PER_RUPEE = 100;
+
+    private static final String BASE_RELATION = "dhan_ohlc";
+
+    private final String prefix;
+    private final String priceType;
+
+    PriceEncoding(String prefix, String priceType) {
+        this.prefix = prefix;
+        this.priceType = priceType;
+    }
+
+    public static PriceEncoding parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown ingestion.price-encoding '" + value + "', expected float or ticks", e);
+        }
+    }
+
+    /**
+     * {@code dhan_ohlc_5m_state} becomes {@code dhan_ohlc_ticks_5m_state} under {@code TICKS}.
+     */
+    public String relation(String name) {
+        if (this == FLOAT || !name.startsWith(BASE_RELATION)) {
+            return name;
+        }
+        return prefix + name.substring(BASE_RELATION.length());
+    }
+
+    public String priceType() {
+        return priceType;
+    }
+
+    /**
+     * Price in whole paise, rounded to the nearest tick; exact for prices quoted in whole paise.
+     */
+    public long toTicks(double rupees) {
+        return Math.round(rupees * TICKS_PER_RUPEE);
+    }
+
+    public long toTicks(BigDecimal rupees) {
+        return rupees.movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * Select expression returning {@code column} in rupees as Float64 under either layout, so query results (values
+     * and schema) do not depend on it. Float32 prices are rounded to 4 decimals (0.25 paise for currency pairs) so the
+     * widening does not surface Float32 noise such as 101.05000305175781.
+     */
+    public String rupees(String column) {
+        return this == FLOAT
+                ? "round(toFloat64(" + column + "), 4) AS " + column
+                : "toFloat64(" + column + ") / " + TICKS_PER_RUPEE + " AS " + column;
+    }
+}
@@ -0,0 +1,157 @@
+package com.dhan.ingestion.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HexFormat;
+
+/**
+ * A JSONEachRow payload serialized once into a single buffer with per-row offsets. Rows rejected by ClickHouse are
+ * excluded by index and skipped while streaming the body, so a retry never re-serializes or copies the payload.
+ */
+final class RowBatch {
+
+    private static final class Buffer extends ByteArrayOutputStream {
+        private Buffer(int size) {
+            super(size);
+        }
+
+        private byte[] array() {
+            return buf;
+        }
+    }
+
+    private final Buffer buffer;
+    private int[] rowStarts;
+    private String[] rowKeys;
+    private int rowCount;
+    private final BitSet excluded = new BitSet();
+
+    RowBatch(int expectedRows) {
+        this.buffer = new Buffer(Math.max(expectedRows, 1) * 96);
+        this.rowStarts = new int[Math.max(expectedRows, 1) + 1];
+        this.rowKeys = new String[Math.max(expectedRows, 1)];
+    }
+
+    OutputStream output() {
+        return buffer;
+    }
+
+    /**
+     * Marks the end of the row just written to {@link #output()}; {@code key} identifies the row for quarantine.
+     */
+    void endRow(String key) {
+        buffer.write('\n');
+        if (rowCount + 1 >= rowStarts.length) {
+            rowStarts = Arrays.copyOf(rowStarts, rowStarts.length * 2);
+            rowKeys = Arrays.copyOf(rowKeys, rowKeys.length * 2);
+        }
+        rowKeys[rowCount] = key;
+        rowCount++;
+        rowStarts[rowCount] = buffer.size();
+    }
+
+    /**
+     * Appends an already serialized row; {@code row} must not contain a line break.
+     */
+    void appendRow(String key, byte[] row) {
+        buffer.write(row, 0, row.length);
+        endRow(key);
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    int liveRowCount() {
+        return rowCount - excluded.cardinality();
+    }
+
+    long liveBytes() {
+        long bytes = buffer.size();
+        for (int row = excluded.nextSetBit(0); row >= 0; row = excluded.nextSetBit(row + 1)) {
+            bytes -= rowStarts[row + 1] - rowStarts[row];
+        }
+        return bytes;
+    }
+
+    void exclude(int row) {
+        excluded.set(row);
+    }
+
+    String rowKey(int row) {
+        return rowKeys[row];
+    }
+
+    String firstLiveKey() {
+        int row = excluded.nextClearBit(0);
+        return row < rowCount ? rowKeys[row] : null;
+    }
+
+    String lastLiveKey() {
+        int row = rowCount == 0 ? -1 : excluded.previousClearBit(rowCount - 1);
+        return row >= 0 ? rowKeys[row] : null;
+    }
+
+    /**
+     * First 128 bits of the SHA-256 of the live rows exactly as {@link #writeTo} sends them, hex-encoded.
+     */
+    String liveDigest() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            writeTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    String rowText(int row) {
+        int start = rowStarts[row];
+        int end = rowStarts[row + 1] - 1;
+        return new String(buffer.array(), start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps a 1-based row number within the payload last sent to the row index in this batch, or {@code -1}.
+     */
+    int rowAtSentPosition(int position) {
+        if (position <= 0) {
+            return -1;
+        }
+        int seen = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (excluded.get(row)) {
+                continue;
+            }
+            if (++seen == position) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        byte[] bytes = buffer.array();
+        int row = 0;
+        while (row < rowCount) {
+            int runStart = excluded.nextClearBit(row);
+            if (runStart >= rowCount) {
+                break;
+            }
+            int nextExcluded = excluded.nextSetBit(runStart);
+            int runEnd = nextExcluded < 0 ? rowCount : Math.min(nextExcluded, rowCount);
+            out.write(bytes, rowStarts[runStart], rowStarts[runEnd] - rowStarts[runStart]);
+            row = runEnd;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.dhan.ingestion.repository;
 
 import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.resilience.CircuitBreaker;
+import com.dhan.ingestion.resilience.CircuitBreakers;
+import com.dhan.ingestion.resilience.CircuitOpenException;
+import com.dhan.ingestion.telemetry.CursorUpdateEvent;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
@@ -9,6 +13,7 @@ import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
@@ -17,8 +22,17 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Repository
 @Slf4j
@@ -28,7 +42,9 @@ public class TickerRepository {
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final RestClient clickhouseRestClient;
+    private final CircuitBreaker circuitBreaker;
     private final ObjectMapper objectMapper;
+    private final AtomicLong lastVersion = new AtomicLong();
 
     @Value("${clickhouse.http.database:default}")
     private String database;
@@ -39,8 +55,10 @@ public class TickerRepository {
     @Value("${clickhouse.http.password:}")
     private String clickhousePassword;
 
-    public TickerRepository(@Qualifier("clickhouseRestClient") RestClient clickhouseRestClient) {
+    public TickerRepository(@Qualifier("clickhouseRestClient") RestClient clickhouseRestClient,
+                            CircuitBreakers circuitBreakers) {
         this.clickhouseRestClient = clickhouseRestClient;
+        this.circuitBreaker = circuitBreakers.clickhouse();
         this.objectMapper = new ObjectMapper();
         this.objectMapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
         var javaTimeModule = new JavaTimeModule();
@@ -50,13 +68,18 @@ public class TickerRepository {
         this.objectMapper.registerModule(javaTimeModule);
     }
 
+    /**
+     * Moves the symbol's cursor; throws {@link CircuitOpenException} while the ClickHouse circuit breaker is open so
+     * the caller stops instead of carrying on as if the cursor had moved. Only {@code last_fetched_time} is touched,
+     * so which row is the symbol's latest version (by {@code version}) never changes.
+     */
     public void updateTickerCursor(String symbol, LocalDateTime lastFetchedTime) {
         LocalDateTime cursorTime = lastFetchedTime.truncatedTo(ChronoUnit.SECONDS);
-        LocalDateTime updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
         String cursorLiteral = cursorTime.format(CLICKHOUSE_TIME_FORMATTER);
-        String updatedLiteral = updatedAt.format(CLICKHOUSE_TIME_FORMATTER);
         String query = "ALTER TABLE " + database
-                + ".tickers UPDATE last_fetched_time = toDateTime('" + cursorLiteral + "'), updated_at = toDateTime('" + updatedLiteral + "') WHERE symbol = '" + escapeSqlString(symbol) + "'";
+                + ".tickers UPDATE last_fetched_time = toDateTime('" + cursorLiteral + "') WHERE symbol = '" + escapeSqlString(symbol) + "'";
+        CursorUpdateEvent event = new CursorUpdateEvent();
+        event.begin();
         try {
             RestClient.RequestHeadersSpec<?> request = clickhouseRestClient.post()
                     .uri(uriBuilder -> uriBuilder.path("/")
@@ -65,28 +88,185 @@ public class TickerRepository {
             if (!clickhouseUser.isBlank()) {
                 request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
             }
-            request.retrieve().toBodilessEntity();
+            RestClient.RequestHeadersSpec<?> update = request;
+            guarded(() -> update.retrieve().toBodilessEntity());
+            event.success = true;
+        } catch (CircuitOpenException ex) {
+            throw ex;
         } catch (RestClientResponseException ex) {
             log.error("Failed to update ticker cursor for {} (status={}): {}", symbol, ex.getStatusCode(), ex.getResponseBodyAsString());
         } catch (Exception ex) {
             log.error("Failed to update ticker cursor for {}", symbol, ex);
+        } finally {
+            if (event.shouldCommit()) {
+                event.symbol = symbol;
+                event.cursor = cursorLiteral;
+                event.commit();
+            }
         }
     }
 
     public Optional<Ticker> findBySymbol(String symbol) {
         String query = "SELECT symbol, security_id, exchange_segment, instrument_type, last_fetched_time, is_active, updated_at "
-                + "FROM " + database + ".tickers WHERE symbol = '" + escapeSqlString(symbol) + "' LIMIT 1 FORMAT JSONEachRow";
+                + "FROM " + database + ".tickers WHERE symbol = '" + escapeSqlString(symbol) + "' ORDER BY version DESC LIMIT 1 FORMAT JSONEachRow";
         List<Ticker> result = fetchTickers(query);
         return result.isEmpty() ? Optional.empty() : Optional.of(result.getFirst());
     }
 
     public List<Ticker> findAllActive() {
+        String query = "SELECT * FROM (SELECT symbol, security_id, exchange_segment, instrument_type, last_fetched_time, is_active, updated_at "
+                + "FROM " + database + ".tickers "
+                + "ORDER BY version DESC LIMIT 1 BY symbol) WHERE is_active = 1 FORMAT JSONEachRow";
+        return fetchTickers(query);
+    }
+
+    /**
+     * Latest version of every ticker, active or not.
+     */
+    public List<Ticker> findAll() {
         String query = "SELECT symbol, security_id, exchange_segment, instrument_type, last_fetched_time, is_active, updated_at "
-                + "FROM " + database + ".tickers WHERE is_active = 1 "
-                + "ORDER BY updated_at DESC LIMIT 1 BY symbol FORMAT JSONEachRow";
+                + "FROM " + database + ".tickers "
+                + "ORDER BY version DESC LIMIT 1 BY symbol FORMAT JSONEachRow";
         return fetchTickers(query);
     }
 
+    /**
+     * Writes new versions of the given tickers as one JSONEachRow insert, each with a fresh {@code version}; returns
+     * {@code false} on failure. The rows carry the cursor they were built with, so use it for tickers the ingestion
+     * path is not already moving (new symbols); change existing ones with {@link #updateTickerAttributes}.
+     */
+    public boolean insertTickers(List<Ticker> tickers) {
+        if (tickers.isEmpty()) {
+            return true;
+        }
+        StringBuilder payload = new StringBuilder(tickers.size() * 160);
+        for (Ticker ticker : tickers) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("symbol", ticker.getSymbol());
+            row.put("security_id", ticker.getSecurityId());
+            row.put("exchange_segment", ticker.getExchangeSegment());
+            row.put("instrument_type", ticker.getInstrumentType());
+            row.put("last_fetched_time", ticker.getLastFetchedTime().truncatedTo(ChronoUnit.SECONDS).format(CLICKHOUSE_TIME_FORMATTER));
+            row.put("is_active", Boolean.TRUE.equals(ticker.getIsActive()) ? 1 : 0);
+            row.put("updated_at", ticker.getUpdatedAt().truncatedTo(ChronoUnit.SECONDS).format(CLICKHOUSE_TIME_FORMATTER));
+            row.put("version", nextVersion());
+            try {
+                payload.append(objectMapper.writeValueAsString(row)).append('\n');
+            } catch (Exception e) {
+                log.warn("Failed to serialize ticker {}", ticker.getSymbol(), e);
+            }
+        }
+        String query = "INSERT INTO " + database + ".tickers FORMAT JSONEachRow";
+        try {
+            RestClient.RequestBodySpec request = clickhouseRestClient.post()
+                    .uri(uriBuilder -> uriBuilder.path("/")
+                            .queryParam("query", query)
+                            .build())
+                    .contentType(MediaType.parseMediaType("application/json; charset=UTF-8"));
+            if (!clickhouseUser.isBlank()) {
+                request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+            }
+            RestClient.RequestBodySpec insert = request;
+            guarded(() -> insert.body(payload.toString())
+                    .retrieve()
+                    .toBodilessEntity());
+            return true;
+        } catch (CircuitOpenException ex) {
+            log.warn("Skipped inserting {} tickers: {}", tickers.size(), ex.getMessage());
+            return false;
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to insert {} tickers (status={}): {}", tickers.size(), ex.getStatusCode(), ex.getResponseBodyAsString());
+            return false;
+        } catch (Exception ex) {
+            log.error("Failed to insert {} tickers", tickers.size(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Changes instrument types and deactivates symbols in place with one mutation. Mutations run in order, so this
+     * neither overtakes nor undoes a queued cursor update the way a new version carrying an older cursor would.
+     * Returns {@code false} on failure.
+     */
+    public boolean updateTickerAttributes(Map<String, String> instrumentTypes, Set<String> deactivated) {
+        if (instrumentTypes.isEmpty() && deactivated.isEmpty()) {
+            return true;
+        }
+        List<String> assignments = new ArrayList<>(3);
+        if (!instrumentTypes.isEmpty()) {
+            assignments.add("instrument_type = transform(toString(symbol), " + stringArray(instrumentTypes.keySet())
+                    + ", " + stringArray(instrumentTypes.values()) + ", instrument_type)");
+        }
+        if (!deactivated.isEmpty()) {
+            assignments.add("is_active = if(symbol IN " + stringTuple(deactivated) + ", 0, is_active)");
+        }
+        assignments.add("updated_at = now()");
+        Set<String> symbols = new HashSet<>(instrumentTypes.keySet());
+        symbols.addAll(deactivated);
+        String query = "ALTER TABLE " + database + ".tickers UPDATE " + String.join(", ", assignments)
+                + " WHERE symbol IN " + stringTuple(symbols);
+        try {
+            mutate(query);
+            return true;
+        } catch (CircuitOpenException ex) {
+            log.warn("Skipped updating {} tickers: {}", symbols.size(), ex.getMessage());
+            return false;
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to update {} tickers (status={}): {}", symbols.size(), ex.getStatusCode(), ex.getResponseBodyAsString());
+            return false;
+        } catch (Exception ex) {
+            log.error("Failed to update {} tickers", symbols.size(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Moves each symbol's cursor forward to the given time with one mutation, through the same
+     * {@code last_fetched_time}-only path as {@link #updateTickerCursor}. A cursor that has meanwhile passed the given
+     * time is left where it is. Returns {@code false} on failure.
+     */
+    public boolean advanceTickerCursors(Map<String, LocalDateTime> cursors) {
+        return moveTickerCursors(cursors, "greatest", "advance");
+    }
+
+    /**
+     * Moves each symbol's cursor back to the given time with one mutation, so the next sync refetches from there. A
+     * cursor that is already at or before the given time is left where it is. Returns {@code false} on failure.
+     */
+    public boolean rewindTickerCursors(Map<String, LocalDateTime> cursors) {
+        return moveTickerCursors(cursors, "least", "rewind");
+    }
+
+    private boolean moveTickerCursors(Map<String, LocalDateTime> cursors, String bound, String action) {
+        if (cursors.isEmpty()) {
+            return true;
+        }
+        List<String> symbols = new ArrayList<>(cursors.keySet());
+        String times = symbols.stream()
+                .map(symbol -> "toDateTime('" + cursors.get(symbol).truncatedTo(ChronoUnit.SECONDS).format(CLICKHOUSE_TIME_FORMATTER) + "')")
+                .collect(Collectors.joining(", ", "[", "]"));
+        String query = "ALTER TABLE " + database + ".tickers UPDATE last_fetched_time = " + bound + "(last_fetched_time, "
+                + "transform(toString(symbol), " + stringArray(symbols) + ", " + times + ", last_fetched_time))"
+                + " WHERE symbol IN " + stringTuple(symbols);
+        try {
+            mutate(query);
+            return true;
+        } catch (CircuitOpenException ex) {
+            log.warn("Skipped moving {} ticker cursors ({}): {}", symbols.size(), action, ex.getMessage());
+            return false;
+        } catch (RestClientResponseException ex) {
+            log.error("Failed to {} {} ticker cursors (status={}): {}", action, symbols.size(), ex.getStatusCode(), ex.getResponseBodyAsString());
+            return false;
+        } catch (Exception ex) {
+            log.error("Failed to {} {} ticker cursors", action, symbols.size(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Throws {@link CircuitOpenException} while the ClickHouse circuit breaker is open, rather than returning an empty
+     * list that would read as "no tickers".
+     */
     private List<Ticker> fetchTickers(String query) {
         RestClient.RequestHeadersSpec<?> request = clickhouseRestClient.get()
                 .uri(uriBuilder -> uriBuilder.path("/")
@@ -97,7 +277,10 @@ public class TickerRepository {
         }
         String response;
         try {
-            response = request.retrieve().body(String.class);
+            RestClient.RequestHeadersSpec<?> select = request;
+            response = guarded(() -> select.retrieve().body(String.class));
+        } catch (CircuitOpenException ex) {
+            throw ex;
         } catch (RestClientResponseException ex) {
             log.error("Failed to fetch tickers (status={}): {}", ex.getStatusCode(), ex.getResponseBodyAsString());
             return List.of();
@@ -128,6 +311,49 @@ public class TickerRepository {
         }
     }
 
+    private <T> T guarded(Supplier<T> call) {
+        circuitBreaker.acquire();
+        try {
+            T result = call.get();
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (RuntimeException ex) {
+            circuitBreaker.onError(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Sends a mutation as the request body, since its symbol lists can be far longer than a URL allows.
+     */
+    private void mutate(String query) {
+        RestClient.RequestBodySpec request = clickhouseRestClient.post()
+                .uri(uriBuilder -> uriBuilder.path("/").build())
+                .contentType(MediaType.TEXT_PLAIN);
+        if (!clickhouseUser.isBlank()) {
+            request = request.headers(headers -> headers.setBasicAuth(clickhouseUser, clickhousePassword));
+        }
+        RestClient.RequestBodySpec update = request;
+        guarded(() -> update.body(query).retrieve().toBodilessEntity());
+    }
+
+    /**
+     * Microseconds since the epoch, strictly increasing within this process, so two writes in the same second
+     * never tie.
+     */
+    private long nextVersion() {
+        long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        return lastVersion.accumulateAndGet(now, (last, candidate) -> Math.max(last + 1, candidate));
+    }
+
+    private String stringArray(Collection<String> values) {
+        return values.stream().map(value -> "'" + escapeSqlString(value) + "'").collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    private String stringTuple(Collection<String> values) {
+        return values.stream().map(value -> "'" + escapeSqlString(value) + "'").collect(Collectors.joining(", ", "(", ")"));
+    }
+
     private String escapeSqlString(String value) {
         if (value == null) {
             return "";
@@ -0,0 +1,178 @@
+package com.dhan.ingestion.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed pool of permits (an exchange segment, or one DhanHQ credential), with optional request pacing and its own
+ * wait/hold statistics.
+ */
+public class Bulkhead {
+
+    public record Stats(String name, int capacity, int inUse, int waiting, long acquired, long borrowed, long lent,
+                        double avgWaitMs, double maxWaitMs, double avgHoldMs) {
+    }
+
+    private final String name;
+    private final int capacity;
+    private final Semaphore permits;
+    private final long minIntervalNanos;
+    private final AtomicLong nextSlotNanos = new AtomicLong(System.nanoTime());
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder lent = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder holdNanos = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
+    public Bulkhead(String name, int capacity, double requestsPerSecond) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+        this.permits = new Semaphore(this.capacity, true);
+        this.minIntervalNanos = requestsPerSecond > 0 ? (long) (1_000_000_000L / requestsPerSecond) : 0L;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    int getWaiting() {
+        return waiting.get();
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Nanoseconds until pacing would admit the next request, or {@code 0} when a request may start now.
+     */
+    public long pacingDelayNanos() {
+        return minIntervalNanos <= 0 ? 0 : Math.max(0, nextSlotNanos.get() - System.nanoTime());
+    }
+
+    /**
+     * Takes a permit from this pool alone (no borrowing), waiting up to {@code timeoutMs}; returns {@code null} on
+     * timeout.
+     */
+    public Lease tryAcquire(long timeoutMs) throws InterruptedException {
+        long queuedAt = System.nanoTime();
+        enterQueue();
+        try {
+            return tryAcquireLocal(timeoutMs) ? lease(this, queuedAt) : null;
+        } finally {
+            leaveQueue();
+        }
+    }
+
+    boolean tryAcquireLocal() {
+        return permits.tryAcquire();
+    }
+
+    boolean tryAcquireLocal(long timeoutMs) throws InterruptedException {
+        return permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lends a permit to another pool only while nobody is queued here and {@code reserve} permits stay free.
+     */
+    boolean tryLend(int reserve) {
+        if (waiting.get() > 0 || permits.availablePermits() <= reserve) {
+            return false;
+        }
+        if (permits.tryAcquire()) {
+            lent.increment();
+            return true;
+        }
+        return false;
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    void enterQueue() {
+        waiting.incrementAndGet();
+    }
+
+    void leaveQueue() {
+        waiting.decrementAndGet();
+    }
+
+    Lease lease(Bulkhead lender, long queuedAtNanos) {
+        long waited = System.nanoTime() - queuedAtNanos;
+        acquired.increment();
+        if (lender != this) {
+            borrowed.increment();
+        }
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        return new Lease(this, lender, System.nanoTime());
+    }
+
+    public void pace() throws InterruptedException {
+        if (minIntervalNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long previous = nextSlotNanos.getAndAccumulate(now, (prev, n) -> Math.max(prev, n) + minIntervalNanos);
+        long slot = Math.max(previous, now);
+        long sleepNanos = slot - now;
+        if (sleepNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        }
+    }
+
+    /**
+     * Claims the next pacing slot only if it is due now; never sleeps.
+     */
+    public boolean tryPace() {
+        if (minIntervalNanos <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        long previous = nextSlotNanos.get();
+        return previous <= now && nextSlotNanos.compareAndSet(previous, now + minIntervalNanos);
+    }
+
+    /**
+     * Returns statistics accumulated since the previous call and resets the interval counters.
+     */
+    public Stats snapshotAndReset() {
+        long acquiredCount = acquired.sumThenReset();
+        long releasedCount = released.sumThenReset();
+        double avgWaitMs = acquiredCount == 0 ? 0 : waitNanos.sumThenReset() / 1_000_000.0 / acquiredCount;
+        double avgHoldMs = releasedCount == 0 ? 0 : holdNanos.sumThenReset() / 1_000_000.0 / releasedCount;
+        return new Stats(name, capacity, capacity - permits.availablePermits(), waiting.get(), acquiredCount,
+                borrowed.sumThenReset(), lent.sumThenReset(), avgWaitMs, maxWaitNanos.getAndSet(0) / 1_000_000.0, avgHoldMs);
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final Bulkhead owner;
+        private final Bulkhead lender;
+        private final long acquiredAtNanos;
+        private boolean closed;
+
+        private Lease(Bulkhead owner, Bulkhead lender, long acquiredAtNanos) {
+            this.owner = owner;
+            this.lender = lender;
+            this.acquiredAtNanos = acquiredAtNanos;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            owner.holdNanos.add(System.nanoTime() - acquiredAtNanos);
+            owner.released.increment();
+            lender.release();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.dhan.ingestion.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Failure-rate circuit breaker for one dependency. Over the last {@code windowSize} calls (once at least
+ * {@code minimumCalls} were seen), a failure rate at or above the threshold opens the breaker and calls fail fast
+ * with {@link CircuitOpenException}. After {@code openMs} up to {@code halfOpenProbes} calls are let through: the
+ * first failure re-opens it, {@code halfOpenProbes} successes close it. Only connection errors and 5xx responses
+ * count as failures; client errors say nothing about the dependency's health.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public record Stats(String name, State state, int calls, int failures, long rejected, long opened) {
+    }
+
+    private final String name;
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final boolean[] outcomes;
+    private final LongAdder rejected = new LongAdder();
+    private int next;
+    private int calls;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openUntilNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private long opened;
+    private String lastFailure;
+
+    public CircuitBreaker(String name, boolean enabled, int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openMs, int halfOpenProbes) {
+        this.name = name;
+        this.enabled = enabled;
+        this.outcomes = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.clamp(minimumCalls, 1, outcomes.length);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Admits a call or throws {@link CircuitOpenException}; every admitted call must end in {@link #onSuccess()},
+     * {@link #onFailure(String)}, {@link #onError(Throwable)} or {@link #onNeutral()}.
+     */
+    public void acquire() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                long remainingNanos = openUntilNanos - System.nanoTime();
+                if (remainingNanos > 0) {
+                    rejected.increment();
+                    throw new CircuitOpenException(name, TimeUnit.NANOSECONDS.toMillis(remainingNanos), lastFailure);
+                }
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+                probeSuccesses = 0;
+                log.info("{} circuit half-open; probing with up to {} calls", name, halfOpenProbes);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight + probeSuccesses >= halfOpenProbes) {
+                    rejected.increment();
+                    throw new CircuitOpenException(name, 0, lastFailure);
+                }
+                probesInFlight++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * True while calls are being rejected outright, before the half-open probe is due.
+     */
+    public boolean isRejecting() {
+        if (!enabled) {
+            return false;
+        }
+        lock.lock();
+        try {
+            return state == State.OPEN && openUntilNanos - System.nanoTime() > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        record(true, null);
+    }
+
+    public void onFailure(String reason) {
+        record(false, reason);
+    }
+
+    /**
+     * Records a failed call, counting only connection errors and 5xx responses against the dependency.
+     */
+    public void onError(Throwable error) {
+        if (error instanceof ResourceAccessException
+                || (error instanceof RestClientResponseException response && response.getStatusCode().is5xxServerError())) {
+            onFailure(error.getClass().getSimpleName() + ": " + error.getMessage());
+        } else {
+            onNeutral();
+        }
+    }
+
+    /**
+     * Ends an admitted call that neither proves nor disproves the dependency's health.
+     */
+    public void onNeutral() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && probesInFlight > 0) {
+                probesInFlight--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(name, state, calls, failures, rejected.sumThenReset(), opened);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean success, String reason) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!success) {
+                lastFailure = reason;
+            }
+            switch (state) {
+                case HALF_OPEN -> {
+                    probesInFlight = Math.max(0, probesInFlight - 1);
+                    if (!success) {
+                        open("probe failed");
+                    } else if (++probeSuccesses >= halfOpenProbes) {
+                        state = State.CLOSED;
+                        resetWindow();
+                        log.info("{} circuit closed after {} successful probes", name, probeSuccesses);
+                    }
+                }
+                case CLOSED -> {
+                    if (calls == outcomes.length && !outcomes[next]) {
+                        failures--;
+                    }
+                    outcomes[next] = success;
+                    next = (next + 1) % outcomes.length;
+                    calls = Math.min(calls + 1, outcomes.length);
+                    if (!success) {
+                        failures++;
+                        if (calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+                            open(failures + " of the last " + calls + " calls failed");
+                        }
+                    }
+                }
+                case OPEN -> {
+                    // late results of calls admitted before the breaker opened
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open(String why) {
+        state = State.OPEN;
+        openUntilNanos = System.nanoTime() + openNanos;
+        opened++;
+        resetWindow();
+        log.warn("{} circuit opened ({}; last error: {}); failing fast for {} ms",
+                name, why, lastFailure, TimeUnit.NANOSECONDS.toMillis(openNanos));
+    }
+
+    private void resetWindow() {
+        next = 0;
+        calls = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,55 @@
+package com.dhan.ingestion.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * The circuit breakers in front of DhanHQ and ClickHouse, sharing one configuration.
+ */
+@Component
+@Slf4j
+public class CircuitBreakers {
+
+    private final CircuitBreaker dhan;
+    private final CircuitBreaker clickhouse;
+
+    public CircuitBreakers(@Value("${ingestion.circuit-breaker.enabled:true}") boolean enabled,
+                           @Value("${ingestion.circuit-breaker.window-size:20}") int windowSize,
+                           @Value("${ingestion.circuit-breaker.minimum-calls:10}") int minimumCalls,
+                           @Value("${ingestion.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                           @Value("${ingestion.circuit-breaker.open-ms:30000}") long openMs,
+                           @Value("${ingestion.circuit-breaker.half-open-probes:2}") int halfOpenProbes) {
+        this.dhan = new CircuitBreaker("DhanHQ", enabled, windowSize, minimumCalls, failureRateThreshold, openMs, halfOpenProbes);
+        this.clickhouse = new CircuitBreaker("ClickHouse", enabled, windowSize, minimumCalls, failureRateThreshold, openMs,
+                halfOpenProbes);
+    }
+
+    public CircuitBreaker dhan() {
+        return dhan;
+    }
+
+    public CircuitBreaker clickhouse() {
+        return clickhouse;
+    }
+
+    /**
+     * True when either dependency is failing fast, so a new run would only be cut short.
+     */
+    public boolean isRejecting() {
+        return dhan.isRejecting() || clickhouse.isRejecting();
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.stats.report-interval-ms:60000}",
+            initialDelayString = "${ingestion.stats.report-interval-ms:60000}")
+    public void reportStats() {
+        for (CircuitBreaker breaker : new CircuitBreaker[]{dhan, clickhouse}) {
+            CircuitBreaker.Stats stats = breaker.stats();
+            if (stats.state() != CircuitBreaker.State.CLOSED || stats.rejected() > 0) {
+                log.warn("{} circuit {}: {} calls rejected since last report, opened {} times",
+                        stats.name(), stats.state(), stats.rejected(), stats.opened());
+            }
+        }
+    }
+}
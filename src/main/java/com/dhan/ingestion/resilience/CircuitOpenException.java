@@ -0,0 +1,12 @@
+package com.dhan.ingestion.resilience;
+
+/**
+ * A call was refused because the dependency's circuit breaker is open; nothing was sent.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String dependency, long retryInMs, String lastFailure) {
+        super(dependency + " circuit open" + (retryInMs > 0 ? "; next probe in " + retryInMs + " ms" : "; probe in progress")
+                + (lastFailure == null ? "" : " (last error: " + lastFailure + ")"), null, false, false);
+    }
+}
@@ -0,0 +1,265 @@
+package com.dhan.ingestion.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limit on concurrent ClickHouse inserts and on rows per insert. {@code target-latency-ms} is the latency
+ * budget of a full batch, so a response is judged by its latency per row against that budget spread over the current
+ * batch size. Fast responses raise both limits; slow ones lower both, which settles the batch size where a full batch
+ * takes about the target. Overload errors (too many parts, memory limit, too many queries, 5xx) halve the concurrency
+ * and pause inserts and new fetches with an exponential back-off; memory-limit errors also halve the batch size.
+ */
+@Component
+@Slf4j
+public class InsertThrottle {
+
+    public enum Overload {
+        TOO_MANY_PARTS,
+        MEMORY_LIMIT,
+        TOO_MANY_QUERIES,
+        SERVER
+    }
+
+    private final boolean enabled;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long targetLatencyNanos;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final int minBatchRows;
+    private final int maxBatchRows;
+    private final int partsThreshold;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int batchRows;
+    private int consecutiveOverloads;
+    private long pausedUntilNanos = System.nanoTime();
+    private long successes;
+    private long slowResponses;
+    private long overloads;
+
+    public InsertThrottle(@Value("${ingestion.insert.throttle.enabled:true}") boolean enabled,
+                          @Value("${ingestion.insert.throttle.min-concurrency:1}") int minConcurrency,
+                          @Value("${ingestion.insert.throttle.max-concurrency:16}") int maxConcurrency,
+                          @Value("${ingestion.insert.throttle.target-latency-ms:2000}") long targetLatencyMs,
+                          @Value("${ingestion.insert.throttle.base-backoff-ms:500}") long baseBackoffMs,
+                          @Value("${ingestion.insert.throttle.max-backoff-ms:30000}") long maxBackoffMs,
+                          @Value("${ingestion.insert.throttle.min-batch-rows:2000}") int minBatchRows,
+                          @Value("${ingestion.insert.throttle.max-batch-rows:100000}") int maxBatchRows,
+                          @Value("${ingestion.insert.throttle.parts-threshold:300}") int partsThreshold) {
+        this.enabled = enabled;
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.minBatchRows = Math.max(1, minBatchRows);
+        this.maxBatchRows = Math.max(this.minBatchRows, maxBatchRows);
+        this.partsThreshold = partsThreshold;
+        this.limit = this.maxConcurrency;
+        this.batchRows = this.maxBatchRows;
+    }
+
+    /**
+     * Blocks while inserts are paused or the concurrency limit is reached.
+     */
+    public Permit acquire() throws InterruptedException {
+        if (!enabled) {
+            return Permit.NOOP;
+        }
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                long pauseNanos = pausedUntilNanos - System.nanoTime();
+                if (pauseNanos > 0) {
+                    changed.awaitNanos(pauseNanos);
+                } else if (inFlight >= (int) limit) {
+                    changed.await();
+                } else {
+                    inFlight++;
+                    return new Permit(this);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Holds the fetch side back while ClickHouse is paused for overload, so fetched rows do not pile up in memory.
+     */
+    public void awaitCapacity() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        lock.lockInterruptibly();
+        try {
+            long pauseNanos;
+            while ((pauseNanos = pausedUntilNanos - System.nanoTime()) > 0) {
+                changed.awaitNanos(pauseNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int batchRows() {
+        lock.lock();
+        try {
+            return batchRows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a successful insert of {@code rows} rows. Batches smaller than {@code min-batch-rows} are judged as if
+     * they had that many rows, so the fixed cost of a tiny insert does not read as a slow one.
+     */
+    public void onSuccess(long latencyNanos, int rows) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            successes++;
+            consecutiveOverloads = 0;
+            double nanosPerRow = (double) latencyNanos / Math.max(rows, minBatchRows);
+            if (nanosPerRow * batchRows > targetLatencyNanos) {
+                slowResponses++;
+                limit = Math.max(minConcurrency, limit * 0.9);
+                batchRows = Math.max(minBatchRows, batchRows - Math.max(1, batchRows / 8));
+            } else {
+                limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+                batchRows = Math.min(maxBatchRows, batchRows + Math.max(1, batchRows / 8));
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Backs off after an overload response; returns the pause in milliseconds.
+     */
+    public long onOverload(Overload overload, String detail) {
+        if (!enabled) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            overloads++;
+            long backoffMs = Math.min(maxBackoffMs, baseBackoffMs << Math.min(consecutiveOverloads, 16));
+            consecutiveOverloads++;
+            limit = Math.max(minConcurrency, limit / 2);
+            if (overload == Overload.MEMORY_LIMIT) {
+                batchRows = Math.max(minBatchRows, batchRows / 2);
+            }
+            pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs));
+            log.warn("ClickHouse overload ({}): pausing inserts for {} ms, concurrency limit {}, batch rows {} | {}",
+                    overload, backoffMs, (int) limit, batchRows, detail);
+            return backoffMs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Feeds the polled part count of the busiest {@code dhan_ohlc} partition; at the threshold inserts back off
+     * before ClickHouse starts delaying or rejecting them.
+     */
+    public void onPartPressure(int maxActiveParts, int runningMerges) {
+        if (maxActiveParts >= partsThreshold) {
+            onOverload(Overload.TOO_MANY_PARTS, maxActiveParts + " active parts in one partition, "
+                    + runningMerges + " merges running");
+        }
+    }
+
+    /**
+     * Classifies a failed insert by ClickHouse exception code (header or body) or HTTP status; {@code null} when the
+     * failure is not an overload.
+     */
+    public static Overload classify(int status, String exceptionCode, String body) {
+        String code = exceptionCode != null ? exceptionCode.trim() : codeFromBody(body);
+        Overload overload = code == null ? null : switch (code) {
+            case "252" -> Overload.TOO_MANY_PARTS;
+            case "241" -> Overload.MEMORY_LIMIT;
+            case "202" -> Overload.TOO_MANY_QUERIES;
+            default -> null;
+        };
+        if (overload == null && (status == 429 || status == 502 || status == 503 || status == 504)) {
+            return Overload.SERVER;
+        }
+        return overload;
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.stats.report-interval-ms:60000}",
+            initialDelayString = "${ingestion.stats.report-interval-ms:60000}")
+    public void reportStats() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (successes + overloads > 0) {
+                log.info("Insert throttle: limit={} inFlight={} batchRows={} ok={} slow={} overloads={}",
+                        String.format("%.1f", limit), inFlight, batchRows, successes, slowResponses, overloads);
+            }
+            successes = 0;
+            slowResponses = 0;
+            overloads = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String codeFromBody(String body) {
+        if (body == null || !body.startsWith("Code: ")) {
+            return null;
+        }
+        int end = 6;
+        while (end < body.length() && Character.isDigit(body.charAt(end))) {
+            end++;
+        }
+        return end > 6 ? body.substring(6, end) : null;
+    }
+
+    public static final class Permit implements AutoCloseable {
+        private static final Permit NOOP = new Permit(null);
+
+        private final InsertThrottle owner;
+        private boolean closed;
+
+        private Permit(InsertThrottle owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void close() {
+            if (closed || owner == null) {
+                return;
+            }
+            closed = true;
+            owner.release();
+        }
+    }
+}
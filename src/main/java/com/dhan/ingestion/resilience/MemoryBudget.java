@@ -0,0 +1,153 @@
+package com.dhan.ingestion.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte budget for fetched windows held in memory (raw response, parsed map, {@code OhlcData} rows and the insert
+ * payload). A window reserves its estimated size before the fetch and is corrected to the observed size after it;
+ * windows wait in arrival order while the budget is spent. Permits are KiB so the budget fits in a semaphore.
+ */
+@Component
+@Slf4j
+public class MemoryBudget {
+
+    private static final long KIB = 1024L;
+
+    private final boolean enabled;
+    private final int capacityKib;
+    private final Semaphore permits;
+    private final AtomicLong overdraftKib = new AtomicLong();
+    private final AtomicLong peakKib = new AtomicLong();
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public MemoryBudget(@Value("${ingestion.memory-budget.enabled:true}") boolean enabled,
+                        @Value("${ingestion.memory-budget.max-bytes:0}") long maxBytes,
+                        @Value("${ingestion.memory-budget.heap-fraction:0.4}") double heapFraction) {
+        this.enabled = enabled;
+        long bytes = maxBytes > 0 ? maxBytes : (long) (Runtime.getRuntime().maxMemory() * heapFraction);
+        this.capacityKib = (int) Math.clamp(bytes / KIB, 1L, Integer.MAX_VALUE);
+        this.permits = new Semaphore(capacityKib, true);
+        if (enabled) {
+            log.info("In-flight memory budget is {} MiB", capacityKib / 1024);
+        }
+    }
+
+    /**
+     * Blocks until {@code estimatedBytes} fit in the budget. A window larger than the whole budget is admitted alone.
+     */
+    public Reservation reserve(long estimatedBytes) throws InterruptedException {
+        if (!enabled) {
+            return Reservation.NOOP;
+        }
+        int kib = toKib(estimatedBytes);
+        if (!permits.tryAcquire(kib)) {
+            long waitStart = System.nanoTime();
+            waits.increment();
+            permits.acquire(kib);
+            waitNanos.add(System.nanoTime() - waitStart);
+        }
+        reservations.increment();
+        updatePeak();
+        return new Reservation(this, kib);
+    }
+
+    public long inUseBytes() {
+        return (capacityKib - (long) permits.availablePermits() + overdraftKib.get()) * KIB;
+    }
+
+    public long capacityBytes() {
+        return capacityKib * KIB;
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.stats.report-interval-ms:60000}",
+            initialDelayString = "${ingestion.stats.report-interval-ms:60000}")
+    public void reportStats() {
+        long count = reservations.sumThenReset();
+        if (!enabled || count == 0) {
+            return;
+        }
+        long waited = waits.sumThenReset();
+        long waitedNanos = waitNanos.sumThenReset();
+        log.info("Memory budget: inUse={}MiB/{}MiB peak={}MiB overdraft={}MiB windows={} waited={} wait avg={}ms",
+                inUseBytes() / (KIB * KIB), capacityKib / 1024, peakKib.getAndSet(0) / 1024,
+                overdraftKib.get() / 1024, count, waited,
+                String.format("%.1f", waited == 0 ? 0.0 : waitedNanos / 1_000_000.0 / waited));
+    }
+
+    private int toKib(long bytes) {
+        return (int) Math.clamp((bytes + KIB - 1) / KIB, 1L, capacityKib);
+    }
+
+    private void updatePeak() {
+        long inUse = inUseBytes() / KIB;
+        peakKib.accumulateAndGet(inUse, Math::max);
+    }
+
+    /**
+     * Budget held by one window; {@link #resize} corrects it once the real response size is known.
+     */
+    public static final class Reservation implements AutoCloseable {
+        private static final Reservation NOOP = new Reservation(null, 0);
+
+        private final MemoryBudget owner;
+        private int kib;
+        private int overdraft;
+        private boolean closed;
+
+        private Reservation(MemoryBudget owner, int kib) {
+            this.owner = owner;
+            this.kib = kib;
+        }
+
+        /**
+         * Shrinks or grows the reservation to the observed size. The rows are already in memory, so growth never
+         * blocks: what the budget cannot cover is recorded as overdraft until the window is released.
+         */
+        public void resize(long observedBytes) {
+            if (owner == null || closed) {
+                return;
+            }
+            int target = owner.toKib(observedBytes);
+            int held = kib + overdraft;
+            if (target < held) {
+                int surplus = held - target;
+                int fromOverdraft = Math.min(surplus, overdraft);
+                overdraft -= fromOverdraft;
+                owner.overdraftKib.addAndGet(-fromOverdraft);
+                int fromPermits = surplus - fromOverdraft;
+                if (fromPermits > 0) {
+                    kib -= fromPermits;
+                    owner.permits.release(fromPermits);
+                }
+            } else if (target > held) {
+                int extra = target - held;
+                if (owner.permits.tryAcquire(extra)) {
+                    kib += extra;
+                } else {
+                    overdraft += extra;
+                    owner.overdraftKib.addAndGet(extra);
+                }
+                owner.updatePeak();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed || owner == null) {
+                return;
+            }
+            closed = true;
+            owner.overdraftKib.addAndGet(-overdraft);
+            owner.permits.release(kib);
+        }
+    }
+}
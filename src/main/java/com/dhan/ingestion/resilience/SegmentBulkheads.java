@@ -0,0 +1,113 @@
+package com.dhan.ingestion.resilience;
+
+import com.dhan.ingestion.config.BulkheadProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-exchange-segment pools for DhanHQ API calls and ticker sync tasks, so a backlog in one segment cannot take
+ * every permit from the others. A pool that is exhausted may borrow a permit from a pool with idle capacity.
+ */
+@Component
+@Slf4j
+public class SegmentBulkheads {
+
+    private static final long BORROW_POLL_MS = 50L;
+    private static final String UNKNOWN_SEGMENT = "UNKNOWN";
+
+    private final BulkheadProperties properties;
+    private final Map<String, Bulkhead> apiPools = new ConcurrentHashMap<>();
+    private final Map<String, Bulkhead> taskPools = new ConcurrentHashMap<>();
+
+    public SegmentBulkheads(BulkheadProperties properties) {
+        this.properties = properties;
+        properties.segments().keySet().forEach(segment -> {
+            apiPool(segment);
+            taskPool(segment);
+        });
+    }
+
+    /**
+     * Blocks until a DhanHQ request slot for the segment is available and its pacing allows a new request.
+     */
+    public Bulkhead.Lease acquireApi(String segment) throws InterruptedException {
+        Bulkhead pool = apiPool(segment);
+        Bulkhead.Lease lease = acquire(pool, apiPools);
+        try {
+            pool.pace();
+        } catch (InterruptedException e) {
+            lease.close();
+            throw e;
+        }
+        return lease;
+    }
+
+    public Bulkhead.Lease acquireTask(String segment) throws InterruptedException {
+        return acquire(taskPool(segment), taskPools);
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.bulkheads.report-interval-ms:60000}",
+            initialDelayString = "${ingestion.bulkheads.report-interval-ms:60000}")
+    public void reportStats() {
+        logStats("api", apiPools);
+        logStats("task", taskPools);
+    }
+
+    private Bulkhead.Lease acquire(Bulkhead pool, Map<String, Bulkhead> pools) throws InterruptedException {
+        long queuedAt = System.nanoTime();
+        pool.enterQueue();
+        try {
+            while (true) {
+                if (pool.tryAcquireLocal()) {
+                    return pool.lease(pool, queuedAt);
+                }
+                if (properties.borrowEnabled()) {
+                    for (Bulkhead lender : pools.values()) {
+                        if (lender != pool && lender.tryLend(properties.borrowReserve())) {
+                            return pool.lease(lender, queuedAt);
+                        }
+                    }
+                }
+                if (pool.tryAcquireLocal(BORROW_POLL_MS)) {
+                    return pool.lease(pool, queuedAt);
+                }
+            }
+        } finally {
+            pool.leaveQueue();
+        }
+    }
+
+    private Bulkhead apiPool(String segment) {
+        String key = normalize(segment);
+        return apiPools.computeIfAbsent(key, name -> {
+            BulkheadProperties.Pool config = properties.forSegment(name);
+            return new Bulkhead(name, config.apiPermits(), config.requestsPerSecond());
+        });
+    }
+
+    private Bulkhead taskPool(String segment) {
+        String key = normalize(segment);
+        return taskPools.computeIfAbsent(key, name -> new Bulkhead(name, properties.forSegment(name).taskPermits(), 0));
+    }
+
+    private String normalize(String segment) {
+        return segment == null || segment.isBlank() ? UNKNOWN_SEGMENT : segment;
+    }
+
+    private void logStats(String kind, Map<String, Bulkhead> pools) {
+        for (Bulkhead pool : pools.values()) {
+            Bulkhead.Stats stats = pool.snapshotAndReset();
+            if (stats.acquired() == 0 && stats.inUse() == 0 && stats.waiting() == 0) {
+                continue;
+            }
+            log.info("Bulkhead {}/{}: inUse={}/{} queued={} acquired={} borrowed={} lent={} wait avg={}ms max={}ms hold avg={}ms",
+                    kind, stats.name(), stats.inUse(), stats.capacity(), stats.waiting(), stats.acquired(),
+                    stats.borrowed(), stats.lent(), String.format("%.1f", stats.avgWaitMs()),
+                    String.format("%.1f", stats.maxWaitMs()), String.format("%.1f", stats.avgHoldMs()));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.dhan.ingestion.scheduler;
+
+import com.dhan.ingestion.config.DhanCredentialPool;
+import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.repository.TickerRepository;
+import com.dhan.ingestion.resilience.CircuitOpenException;
+import com.dhan.ingestion.service.FreshnessMonitor;
+import com.dhan.ingestion.service.IngestionService;
+import com.dhan.ingestion.service.MarketStatusService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minute-aligned ingestion for market hours: shortly after each minute boundary the bellwether is probed, and only
+ * when it has a bar newer than on the previous tick (so not on holidays, before the open or while the feed lags) is
+ * every active symbol whose cursor is behind that bar fetched for the small slice. Dispatches are spread across the
+ * minute and capped per tick by the credentials' request-rate budget, and a symbol whose last fetch brought nothing
+ * new is left alone for {@code idle-backoff-minutes}, so illiquid symbols do not cost a call every minute.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "ingestion.continuous", name = "enabled", havingValue = "true")
+public class ContinuousIngestionScheduler {
+
+    private static final ZoneId MARKET_ZONE = ZoneId.of("Asia/Kolkata");
+    // DhanHQ's Data API limit per client, assumed when dhan.api.requests-per-second leaves credentials unpaced
+    private static final double DHAN_DATA_REQUESTS_PER_SECOND = 5.0;
+
+    private record Dispatch(LocalDateTime cursor, LocalDateTime at) {
+    }
+
+    private final TickerRepository tickerRepository;
+    private final IngestionService ingestionService;
+    private final FreshnessMonitor freshnessMonitor;
+    private final MarketStatusService marketStatusService;
+    private final LocalTime sessionStart;
+    private final LocalTime sessionEnd;
+    private final long spreadMillis;
+    private final int maxSymbolsPerMinute;
+    private final int idleBackoffMinutes;
+    private final Map<String, Dispatch> lastDispatch = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastBellwetherBar;
+    private final ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("continuous-pacer").daemon().factory());
+
+    public ContinuousIngestionScheduler(TickerRepository tickerRepository,
+                                        IngestionService ingestionService,
+                                        FreshnessMonitor freshnessMonitor,
+                                        MarketStatusService marketStatusService,
+                                        DhanCredentialPool credentialPool,
+                                        @Value("${dhan.api.requests-per-second:0}") double requestsPerSecond,
+                                        @Value("${ingestion.continuous.session-start:09:15}") String sessionStart,
+                                        @Value("${ingestion.continuous.session-end:15:31}") String sessionEnd,
+                                        @Value("${ingestion.continuous.spread-seconds:40}") int spreadSeconds,
+                                        @Value("${ingestion.continuous.max-symbols-per-minute:0}") int maxSymbolsPerMinute,
+                                        @Value("${ingestion.continuous.idle-backoff-minutes:5}") int idleBackoffMinutes) {
+        this.tickerRepository = tickerRepository;
+        this.ingestionService = ingestionService;
+        this.freshnessMonitor = freshnessMonitor;
+        this.marketStatusService = marketStatusService;
+        this.sessionStart = LocalTime.parse(sessionStart);
+        this.sessionEnd = LocalTime.parse(sessionEnd);
+        this.spreadMillis = TimeUnit.SECONDS.toMillis(spreadSeconds);
+        this.idleBackoffMinutes = idleBackoffMinutes;
+
+        // one bellwether probe plus the dispatches, all within the spread, per credential at its paced rate
+        double perCredential = requestsPerSecond > 0 ? requestsPerSecond : DHAN_DATA_REQUESTS_PER_SECOND;
+        int budget = (int) (credentialPool.credentials().size() * perCredential * Math.max(1, spreadSeconds)) - 1;
+        if (budget < 1) {
+            throw new IllegalArgumentException("ingestion.continuous.spread-seconds leaves no request budget for dispatches");
+        }
+        if (maxSymbolsPerMinute > budget) {
+            throw new IllegalArgumentException("ingestion.continuous.max-symbols-per-minute=" + maxSymbolsPerMinute
+                    + " exceeds the request budget of " + budget + " calls per tick (" + credentialPool.credentials().size()
+                    + " credentials at " + perCredential + " requests/s over " + spreadSeconds + " s)");
+        }
+        this.maxSymbolsPerMinute = maxSymbolsPerMinute > 0 ? maxSymbolsPerMinute : budget;
+        log.info("Continuous ingestion dispatches at most {} symbols per minute", this.maxSymbolsPerMinute);
+    }
+
+    @Scheduled(cron = "${ingestion.continuous.cron:5 * * * * MON-FRI}", zone = "Asia/Kolkata")
+    public void onMinute() {
+        try {
+            LocalDateTime boundary = LocalDateTime.now(MARKET_ZONE).truncatedTo(ChronoUnit.MINUTES);
+            LocalTime time = boundary.toLocalTime();
+            if (time.isBefore(sessionStart.plusMinutes(1)) || time.isAfter(sessionEnd)) {
+                return;
+            }
+            dispatch(boundary);
+        } catch (CircuitOpenException e) {
+            log.warn("Continuous ingestion tick skipped: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Continuous ingestion tick failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pacer.shutdownNow();
+    }
+
+    private void dispatch(LocalDateTime boundary) {
+        LocalDateTime sessionOpen = boundary.toLocalDate().atTime(sessionStart);
+        LocalDateTime previousBar = lastBellwetherBar;
+        LocalDateTime probeFrom = previousBar != null && previousBar.isAfter(sessionOpen) ? previousBar : sessionOpen;
+        Optional<LocalDateTime> bellwetherBar = marketStatusService.latestBellwetherBar(probeFrom, boundary);
+        if (bellwetherBar.isEmpty() || (previousBar != null && !bellwetherBar.get().isAfter(previousBar))) {
+            log.debug("No new bellwether bar since {}; skipping continuous tick {}", previousBar, boundary);
+            return;
+        }
+        LocalDateTime lastClosedBar = bellwetherBar.get();
+        lastBellwetherBar = lastClosedBar;
+        List<Ticker> active = tickerRepository.findAllActive();
+        freshnessMonitor.observe(active, lastClosedBar);
+
+        String bellwetherSymbol = marketStatusService.getBellwetherSymbol();
+        List<Ticker> due = active.stream()
+                .filter(ticker -> !ticker.getSymbol().equals(bellwetherSymbol))
+                .filter(ticker -> ticker.getLastFetchedTime() != null && ticker.getLastFetchedTime().isBefore(lastClosedBar))
+                .filter(ticker -> !ingestionService.isSyncing(ticker.getSymbol()))
+                .filter(ticker -> !idle(ticker, boundary))
+                .sorted(Comparator.comparing(Ticker::getLastFetchedTime))
+                .limit(maxSymbolsPerMinute)
+                .toList();
+        if (due.isEmpty()) {
+            return;
+        }
+        log.info("Continuous ingestion for bar {}: {} of {} symbols due, spread over {} ms",
+                lastClosedBar, due.size(), active.size(), spreadMillis);
+
+        long step = due.size() > 1 ? spreadMillis / (due.size() - 1) : 0;
+        for (int i = 0; i < due.size(); i++) {
+            Ticker ticker = due.get(i);
+            lastDispatch.put(ticker.getSymbol(), new Dispatch(ticker.getLastFetchedTime(), boundary));
+            pacer.schedule(() -> ingestionService.processContinuous(List.of(ticker), boundary),
+                    i * step, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A symbol is idle when its previous dispatch did not move its cursor and happened within the back-off.
+     */
+    private boolean idle(Ticker ticker, LocalDateTime boundary) {
+        Dispatch previous = lastDispatch.get(ticker.getSymbol());
+        return previous != null
+                && !ticker.getLastFetchedTime().isAfter(previous.cursor())
+                && previous.at().plusMinutes(idleBackoffMinutes).isAfter(boundary);
+    }
+}
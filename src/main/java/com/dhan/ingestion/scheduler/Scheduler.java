@@ -3,6 +3,8 @@ package com.dhan.ingestion.scheduler;
 import com.dhan.ingestion.domain.MarketStatus;
 import com.dhan.ingestion.domain.Ticker;
 import com.dhan.ingestion.repository.TickerRepository;
+import com.dhan.ingestion.resilience.CircuitOpenException;
+import com.dhan.ingestion.service.FreshnessMonitor;
 import com.dhan.ingestion.service.IngestionService;
 import com.dhan.ingestion.service.MarketStatusService;
 import lombok.RequiredArgsConstructor;
@@ -11,7 +13,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.DayOfWeek;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
@@ -24,11 +29,21 @@ public class Scheduler {
     private final MarketStatusService marketStatusService;
     private final TickerRepository tickerRepository;
     private final IngestionService ingestionService;
+    private final FreshnessMonitor freshnessMonitor;
     private final AtomicBoolean jobRunning = new AtomicBoolean(false);
 
     @Value("${ingestion.scheduler.stale-threshold-minutes:5}")
     private int staleThresholdMinutes;
 
+    @Value("${ingestion.continuous.enabled:false}")
+    private boolean continuousEnabled;
+
+    @Value("${ingestion.continuous.session-start:09:15}")
+    private String sessionStart;
+
+    @Value("${ingestion.continuous.session-end:15:31}")
+    private String sessionEnd;
+
     @Scheduled(cron = "${ingestion.scheduler.cron}", zone = "UTC")
     public void runIngestionJob() {
         if (!jobRunning.compareAndSet(false, true)) {
@@ -36,6 +51,10 @@ public class Scheduler {
             return;
         }
         try {
+            if (inContinuousSession()) {
+                log.debug("Continuous ingestion covers the session; skipping scheduled ingestion run.");
+                return;
+            }
             log.info("Starting scheduled ingestion job...");
 
             // 1. Check Bellwether
@@ -52,6 +71,7 @@ public class Scheduler {
 
             // 2. Identify Stale Tickers
             List<Ticker> allTickers = tickerRepository.findAllActive();
+            freshnessMonitor.observe(allTickers, bellwetherTime);
             LocalDateTime threshold = bellwetherTime.minusMinutes(staleThresholdMinutes);
 
             List<Ticker> staleTickers = allTickers.stream()
@@ -67,10 +87,27 @@ public class Scheduler {
 
             // 3. Process Parallel
             ingestionService.processTickersParallel(staleTickers, bellwetherTime);
+        } catch (CircuitOpenException e) {
+            log.warn("Skipping ingestion run: {}", e.getMessage());
         } catch (Exception e) {
             log.error("Critical error in ingestion scheduler", e);
         } finally {
             jobRunning.set(false);
         }
     }
+
+    /**
+     * With continuous ingestion on, the minute ticks keep symbols current during a weekday session, so this job only
+     * catches up outside it.
+     */
+    private boolean inContinuousSession() {
+        if (!continuousEnabled) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now(ZoneId.of("Asia/Kolkata"));
+        DayOfWeek day = now.getDayOfWeek();
+        LocalTime time = now.toLocalTime();
+        return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY
+                && !time.isBefore(LocalTime.parse(sessionStart)) && !time.isAfter(LocalTime.parse(sessionEnd));
+    }
 }
@@ -0,0 +1,229 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.client.OhlcBatch;
+import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.repository.DeadLetterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Data-quality checks on fetched 1m bars, run in one pass over the batch's primitive columns before anything is
+ * materialized. Bars whose high/low do not bracket open and close (including high below low) are repaired by
+ * widening the range to the extremes of the four prices; bars with non-positive prices, timestamps outside the
+ * segment's session, or duplicate/out-of-order timestamps are dropped and recorded in the dead-letter store as
+ * {@code invalid}.
+ */
+@Component
+@Slf4j
+public class BarValidator {
+
+    private static final long IST_OFFSET_SECONDS = 5 * 3600 + 30 * 60;
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private enum Violation {
+        NON_POSITIVE_PRICE("non-positive or missing price"),
+        DUPLICATE_TIME("duplicate timestamp"),
+        OUT_OF_ORDER("out-of-order timestamp"),
+        OUTSIDE_SESSION("timestamp outside session"),
+        RANGE("high/low do not bracket open/close");
+
+        private final String reason;
+
+        Violation(String reason) {
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * Session as seconds after midnight IST; a bar is in session when {@code open <= bar time < close}.
+     */
+    private record Session(int open, int close) {
+    }
+
+    private static final Session EQUITY_SESSION = new Session(9 * 3600 + 15 * 60, 15 * 3600 + 30 * 60);
+    private static final Map<String, Session> SESSIONS = Map.of(
+            "IDX_I", EQUITY_SESSION,
+            "NSE_EQ", EQUITY_SESSION,
+            "NSE_FNO", EQUITY_SESSION,
+            "BSE_EQ", EQUITY_SESSION,
+            "BSE_FNO", EQUITY_SESSION,
+            "NSE_CURRENCY", new Session(9 * 3600, 17 * 3600),
+            "BSE_CURRENCY", new Session(9 * 3600, 17 * 3600),
+            "MCX_COMM", new Session(9 * 3600, 23 * 3600 + 55 * 60)
+    );
+
+    private static final class SymbolCounters {
+        private final AtomicLong checked = new AtomicLong();
+        private final AtomicLong repaired = new AtomicLong();
+        private final AtomicLong quarantined = new AtomicLong();
+    }
+
+    private final DeadLetterRepository deadLetterRepository;
+    private final boolean enabled;
+    private final boolean repairRange;
+    private final boolean sessionCheck;
+    private final Map<String, SymbolCounters> countersBySymbol = new ConcurrentHashMap<>();
+    private final AtomicLongArray violations = new AtomicLongArray(Violation.values().length);
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong repaired = new AtomicLong();
+
+    public BarValidator(DeadLetterRepository deadLetterRepository,
+                        @Value("${ingestion.validation.enabled:true}") boolean enabled,
+                        @Value("${ingestion.validation.repair-range:true}") boolean repairRange,
+                        @Value("${ingestion.validation.session-check:true}") boolean sessionCheck) {
+        this.deadLetterRepository = deadLetterRepository;
+        this.enabled = enabled;
+        this.repairRange = repairRange;
+        this.sessionCheck = sessionCheck;
+    }
+
+    /**
+     * Repairs or drops bad bars in place and returns the latest timestamp in the response, valid or not, so the
+     * cursor can move past a window whose bars were all dropped; {@code null} for an empty batch.
+     */
+    public LocalDateTime validate(Ticker ticker, OhlcBatch bars) {
+        return check(ticker, bars, true);
+    }
+
+    /**
+     * Like {@link #validate}, for bars that were checked once already (dead-letter and archive replays): the same
+     * repairs and drops, but dropped bars are not recorded as dead letters again.
+     */
+    public LocalDateTime revalidate(Ticker ticker, OhlcBatch bars) {
+        return check(ticker, bars, false);
+    }
+
+    private LocalDateTime check(Ticker ticker, OhlcBatch bars, boolean recordDeadLetters) {
+        int size = bars.size();
+        if (size == 0) {
+            return null;
+        }
+        long[] times = bars.epochSeconds();
+        long latest = Long.MIN_VALUE;
+        if (!enabled) {
+            for (int i = 0; i < size; i++) {
+                latest = Math.max(latest, times[i]);
+            }
+            return OhlcBatch.marketTime(latest);
+        }
+
+        double[] open = bars.open();
+        double[] high = bars.high();
+        double[] low = bars.low();
+        double[] close = bars.close();
+        long[] volume = bars.volume();
+        Session session = sessionCheck ? SESSIONS.get(ticker.getExchangeSegment()) : null;
+
+        long previous = Long.MIN_VALUE;
+        int kept = 0;
+        int fixed = 0;
+        for (int i = 0; i < size; i++) {
+            long time = times[i];
+            double o = open[i];
+            double h = high[i];
+            double l = low[i];
+            double c = close[i];
+            latest = Math.max(latest, time);
+
+            Violation violation = null;
+            if (!(o > 0 && h > 0 && l > 0 && c > 0)) {
+                violation = Violation.NON_POSITIVE_PRICE;
+            } else if (time <= previous) {
+                violation = time == previous ? Violation.DUPLICATE_TIME : Violation.OUT_OF_ORDER;
+            } else if (session != null && outsideSession(session, time)) {
+                violation = Violation.OUTSIDE_SESSION;
+            } else {
+                double top = Math.max(Math.max(o, c), Math.max(h, l));
+                double bottom = Math.min(Math.min(o, c), Math.min(h, l));
+                if (top != h || bottom != l) {
+                    if (repairRange) {
+                        h = top;
+                        l = bottom;
+                        fixed++;
+                    } else {
+                        violation = Violation.RANGE;
+                    }
+                }
+            }
+
+            if (violation != null) {
+                violations.incrementAndGet(violation.ordinal());
+                if (recordDeadLetters) {
+                    quarantine(ticker, time, open[i], high[i], low[i], close[i], volume[i], violation);
+                }
+                continue;
+            }
+            times[kept] = time;
+            open[kept] = o;
+            high[kept] = h;
+            low[kept] = l;
+            close[kept] = c;
+            volume[kept] = volume[i];
+            kept++;
+            previous = time;
+        }
+        bars.truncate(kept);
+
+        checked.addAndGet(size);
+        repaired.addAndGet(fixed);
+        if (kept < size || fixed > 0) {
+            SymbolCounters counters = countersBySymbol.computeIfAbsent(ticker.getSymbol(), ignored -> new SymbolCounters());
+            counters.checked.addAndGet(size);
+            counters.repaired.addAndGet(fixed);
+            counters.quarantined.addAndGet(size - kept);
+        }
+        return OhlcBatch.marketTime(latest);
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.stats.report-interval-ms:60000}",
+            initialDelayString = "${ingestion.stats.report-interval-ms:60000}")
+    public void reportStats() {
+        long checkedBars = checked.getAndSet(0);
+        long repairedBars = repaired.getAndSet(0);
+        StringBuilder dropped = new StringBuilder();
+        long droppedBars = 0;
+        for (Violation violation : Violation.values()) {
+            long count = violations.getAndSet(violation.ordinal(), 0);
+            if (count > 0) {
+                droppedBars += count;
+                dropped.append(dropped.isEmpty() ? "" : ", ").append(violation.reason).append('=').append(count);
+            }
+        }
+        if (repairedBars == 0 && droppedBars == 0) {
+            return;
+        }
+        String worst = countersBySymbol.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, SymbolCounters> entry) ->
+                        -(entry.getValue().quarantined.get() + entry.getValue().repaired.get())))
+                .limit(5)
+                .map(entry -> entry.getKey() + "(dropped " + entry.getValue().quarantined.get() + ", repaired "
+                        + entry.getValue().repaired.get() + " of " + entry.getValue().checked.get() + ")")
+                .collect(Collectors.joining(", "));
+        log.warn("Bar validation: {} checked, {} repaired, {} dropped [{}]; worst symbols so far: {}",
+                checkedBars, repairedBars, droppedBars, dropped, worst);
+    }
+
+    private static boolean outsideSession(Session session, long epochSecond) {
+        int secondOfDay = (int) Math.floorMod(epochSecond + IST_OFFSET_SECONDS, (long) SECONDS_PER_DAY);
+        return secondOfDay < session.open() || secondOfDay >= session.close();
+    }
+
+    private void quarantine(Ticker ticker, long time, double open, double high, double low, double close,
+                            long volume, Violation violation) {
+        String bar = String.format(Locale.ROOT, "{\"open\":%s,\"high\":%s,\"low\":%s,\"close\":%s,\"volume\":%d}",
+                open, high, low, close, volume);
+        deadLetterRepository.recordInvalidBar(ticker.getSymbol(), ticker.getExchangeSegment(),
+                OhlcBatch.marketTime(time), bar, violation.reason);
+    }
+}
@@ -0,0 +1,140 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.repository.OhlcRepository;
+import com.dhan.ingestion.repository.TickerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Moves {@code tickers.last_fetched_time} forward to the latest bar that actually landed in {@code dhan_ohlc}, using
+ * one {@code GROUP BY sym} query and one batched cursor mutation instead of a point query per symbol. Cursors ahead of
+ * the stored data are logged with the size of the gap. By default they are left alone: the ingestion path advances a
+ * cursor past bars it quarantined, so {@code max(time)} trailing the cursor by a little is expected, and moving it back
+ * would refetch the same window on every pass. After an incident (a cursor that moved past a failed insert), set
+ * {@code rewind-ahead-minutes} to move cursors that lead the data by more than that back to their last stored bar.
+ */
+@Service
+@Slf4j
+public class CursorReconciliationService {
+
+    private static final int LOGGED_AHEAD_SYMBOLS = 20;
+
+    private final TickerRepository tickerRepository;
+    private final OhlcRepository ohlcRepository;
+    private final IngestionService ingestionService;
+    private final boolean onStartup;
+    private final String bellwetherSymbol;
+    private final long rewindAheadMinutes;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public CursorReconciliationService(TickerRepository tickerRepository,
+                                       OhlcRepository ohlcRepository,
+                                       IngestionService ingestionService,
+                                       @Value("${ingestion.reconcile.on-startup:true}") boolean onStartup,
+                                       @Value("${ingestion.market.bellwether-symbol}") String bellwetherSymbol,
+                                       @Value("${ingestion.reconcile.rewind-ahead-minutes:0}") long rewindAheadMinutes) {
+        this.tickerRepository = tickerRepository;
+        this.ohlcRepository = ohlcRepository;
+        this.ingestionService = ingestionService;
+        this.onStartup = onStartup;
+        this.bellwetherSymbol = bellwetherSymbol;
+        this.rewindAheadMinutes = rewindAheadMinutes;
+    }
+
+    /**
+     * Runs before checkpointed syncs are resumed, so no cursor is moving while it is read and corrected.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void reconcileOnStartup() {
+        if (onStartup) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Returns the number of cursors corrected (moved forward or rewound), or {@code -1} when the pass did not run or
+     * failed.
+     */
+    @Scheduled(cron = "${ingestion.reconcile.cron:-}", zone = "Asia/Kolkata")
+    public int reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous cursor reconciliation still running. Skipping this run.");
+            return -1;
+        }
+        try {
+            return reconcileCursors();
+        } catch (Exception e) {
+            log.error("Cursor reconciliation failed", e);
+            return -1;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int reconcileCursors() {
+        long startedAt = System.nanoTime();
+        Optional<Map<String, LocalDateTime>> lastBars = ohlcRepository.findLastBarTimes();
+        if (lastBars.isEmpty()) {
+            log.warn("Could not read latest bar times; skipping cursor reconciliation");
+            return -1;
+        }
+        List<Ticker> tickers = tickerRepository.findAllActive();
+        Map<String, LocalDateTime> corrected = new HashMap<>();
+        Map<String, LocalDateTime> rewound = new HashMap<>();
+        Map<String, Long> aheadMinutes = new HashMap<>();
+        for (Ticker ticker : tickers) {
+            LocalDateTime lastBar = lastBars.get().get(ticker.getSymbol());
+            // the bellwether cursor tracks the market probe, not stored bars
+            if (lastBar == null || ticker.getSymbol().equals(bellwetherSymbol) || ingestionService.isSyncing(ticker.getSymbol())) {
+                continue;
+            }
+            LocalDateTime cursor = ticker.getLastFetchedTime();
+            if (cursor != null && !cursor.truncatedTo(ChronoUnit.SECONDS).isBefore(lastBar)) {
+                long gap = Duration.between(lastBar, cursor.truncatedTo(ChronoUnit.SECONDS)).toMinutes();
+                if (gap > 0) {
+                    aheadMinutes.put(ticker.getSymbol(), gap);
+                    if (rewindAheadMinutes > 0 && gap > rewindAheadMinutes) {
+                        rewound.put(ticker.getSymbol(), lastBar);
+                    }
+                }
+                continue;
+            }
+            log.debug("Reconciling cursor for {}: {} -> {}", ticker.getSymbol(), cursor, lastBar);
+            corrected.put(ticker.getSymbol(), lastBar);
+        }
+        if (!tickerRepository.advanceTickerCursors(corrected) || !tickerRepository.rewindTickerCursors(rewound)) {
+            return -1;
+        }
+        if (!aheadMinutes.isEmpty()) {
+            log.warn("{} cursors are ahead of their stored bars (largest gaps first, minutes): {}", aheadMinutes.size(),
+                    aheadMinutes.entrySet().stream()
+                            .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                            .limit(LOGGED_AHEAD_SYMBOLS)
+                            .map(entry -> entry.getKey() + "=" + entry.getValue())
+                            .collect(Collectors.joining(", ")));
+        }
+        log.info("Cursor reconciliation checked {} tickers against {} symbols in dhan_ohlc: {} moved forward, {} ahead of stored bars, {} of them rewound in {} ms",
+                tickers.size(), lastBars.get().size(), corrected.size(), aheadMinutes.size(), rewound.size(),
+                (System.nanoTime() - startedAt) / 1_000_000);
+        return corrected.size() + rewound.size();
+    }
+}
@@ -0,0 +1,258 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.client.MarketDataClient;
+import com.dhan.ingestion.client.OhlcFetchResult;
+import com.dhan.ingestion.domain.DeadLetter;
+import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.repository.DeadLetterRepository;
+import com.dhan.ingestion.repository.OhlcRepository;
+import com.dhan.ingestion.repository.TickerRepository;
+import com.dhan.ingestion.resilience.CircuitOpenException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Reprocesses the dead-letter store in bulk: rejected rows are re-inserted as one batch, and failed windows are
+ * merged per symbol into contiguous spans that are refetched with bounded concurrency. A span is fetched from its
+ * ticker's cursor onwards (a span the cursor has passed is already stored), and the cursor is then moved past it, so
+ * the next regular sync does not fetch the same range again.
+ */
+@Service
+@Slf4j
+public class DeadLetterReplayService {
+
+    private record Span(Ticker ticker, LocalDateTime from, LocalDateTime to, List<DeadLetter> entries) {
+    }
+
+    private final DeadLetterRepository deadLetterRepository;
+    private final OhlcRepository ohlcRepository;
+    private final TickerRepository tickerRepository;
+    private final MarketDataClient marketDataClient;
+    private final WindowPlanner windowPlanner;
+    private final OhlcQueryCache ohlcQueryCache;
+    private final BarValidator barValidator;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final int concurrency;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public DeadLetterReplayService(DeadLetterRepository deadLetterRepository,
+                                   OhlcRepository ohlcRepository,
+                                   TickerRepository tickerRepository,
+                                   MarketDataClient marketDataClient,
+                                   WindowPlanner windowPlanner,
+                                   OhlcQueryCache ohlcQueryCache,
+                                   BarValidator barValidator,
+                                   @Value("${ingestion.dead-letter.replay-batch-size:5000}") int batchSize,
+                                   @Value("${ingestion.dead-letter.max-attempts:5}") int maxAttempts,
+                                   @Value("${ingestion.dead-letter.replay-concurrency:8}") int concurrency) {
+        this.deadLetterRepository = deadLetterRepository;
+        this.ohlcRepository = ohlcRepository;
+        this.tickerRepository = tickerRepository;
+        this.marketDataClient = marketDataClient;
+        this.windowPlanner = windowPlanner;
+        this.ohlcQueryCache = ohlcQueryCache;
+        this.barValidator = barValidator;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.concurrency = concurrency;
+    }
+
+    @Scheduled(cron = "${ingestion.dead-letter.replay-cron:-}", zone = "UTC")
+    public void replay() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous dead-letter replay still running. Skipping this run.");
+            return;
+        }
+        try {
+            deadLetterRepository.flush();
+            replayRows();
+            replayWindows();
+        } catch (CircuitOpenException e) {
+            log.warn("Dead-letter replay stopped: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Dead-letter replay failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void replayRows() {
+        List<DeadLetter> rows = deadLetterRepository.findPending(DeadLetter.KIND_ROW, batchSize, maxAttempts);
+        if (rows.isEmpty()) {
+            return;
+        }
+        Optional<BitSet> outcome = ohlcRepository.insertRawRows(rows.stream().map(DeadLetter::getPayload).toList());
+        if (outcome.isEmpty()) {
+            deadLetterRepository.markAttempted(rows);
+            log.warn("Dead-letter row replay failed for {} rows", rows.size());
+            return;
+        }
+        BitSet rejected = outcome.get();
+        List<DeadLetter> replayed = new ArrayList<>(rows.size());
+        List<DeadLetter> failed = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            DeadLetter row = rows.get(i);
+            if (rejected.get(i)) {
+                failed.add(row);
+            } else {
+                replayed.add(row);
+                ohlcQueryCache.invalidate(row.getSymbol());
+            }
+        }
+        deadLetterRepository.markReplayed(replayed);
+        deadLetterRepository.markAttempted(failed);
+        log.info("Replayed {} dead-letter rows ({} rejected again)", replayed.size(), failed.size());
+    }
+
+    private void replayWindows() throws InterruptedException {
+        List<DeadLetter> windows = deadLetterRepository.findPending(DeadLetter.KIND_WINDOW, batchSize, maxAttempts);
+        if (windows.isEmpty()) {
+            return;
+        }
+        List<Span> spans = mergeSpans(windows);
+        log.info("Replaying {} dead-letter windows as {} spans", windows.size(), spans.size());
+        Map<String, LocalDateTime> cursors = tickerRepository.findAll().stream()
+                .filter(ticker -> ticker.getLastFetchedTime() != null)
+                .collect(Collectors.toMap(Ticker::getSymbol, Ticker::getLastFetchedTime, (a, b) -> a));
+
+        ConcurrentLinkedQueue<DeadLetter> replayed = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<DeadLetter> failed = new ConcurrentLinkedQueue<>();
+        Map<String, LocalDateTime> advanced = new ConcurrentHashMap<>();
+        AtomicInteger covered = new AtomicInteger();
+        AtomicInteger deferred = new AtomicInteger();
+        Semaphore permits = new Semaphore(concurrency);
+        List<Callable<Void>> tasks = new ArrayList<>(spans.size());
+        for (Span span : spans) {
+            LocalDateTime cursor = cursors.get(span.ticker().getSymbol());
+            // the regular sync resumes one minute after the cursor; bars before that are stored already
+            LocalDateTime from = cursor == null ? span.from() : cursor.plusMinutes(1);
+            if (!from.isBefore(span.to())) {
+                replayed.addAll(span.entries());
+                covered.addAndGet(span.entries().size());
+                continue;
+            }
+            tasks.add(() -> {
+                permits.acquire();
+                try {
+                    Optional<LocalDateTime> latest = replaySpan(span, from);
+                    if (latest.isPresent()) {
+                        replayed.addAll(span.entries());
+                        if (cursor != null && latest.get().isAfter(cursor)) {
+                            advanced.put(span.ticker().getSymbol(), latest.get());
+                        }
+                    } else {
+                        failed.addAll(span.entries());
+                    }
+                } catch (CircuitOpenException e) {
+                    // not an attempt: the span stays pending with its attempt count unchanged
+                    deferred.addAndGet(span.entries().size());
+                } finally {
+                    permits.release();
+                }
+                return null;
+            });
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.invokeAll(tasks);
+        }
+        if (!advanced.isEmpty() && !tickerRepository.advanceTickerCursors(Map.copyOf(advanced))) {
+            log.warn("Could not advance the cursors of {} replayed symbols; the next sync refetches their spans",
+                    advanced.size());
+        }
+        deadLetterRepository.markReplayed(List.copyOf(replayed));
+        deadLetterRepository.markAttempted(List.copyOf(failed));
+        log.info("Dead-letter window replay finished: {} windows replayed ({} already behind the cursor), {} failed, "
+                        + "{} deferred by an open circuit; {} cursors advanced", replayed.size(), covered.get(),
+                failed.size(), deferred.get(), advanced.size());
+    }
+
+    /**
+     * Fetches and stores {@code [from, span.to)}; returns the latest bar time seen ({@link LocalDateTime#MIN} when
+     * there was none), or empty when a window could not be fetched or stored.
+     */
+    private Optional<LocalDateTime> replaySpan(Span span, LocalDateTime from) {
+        Ticker ticker = span.ticker();
+        LocalDateTime windowStart = from;
+        LocalDateTime latest = LocalDateTime.MIN;
+        try {
+            while (windowStart.isBefore(span.to())) {
+                LocalDateTime windowEnd = windowPlanner.nextWindowEnd(ticker, windowStart, span.to());
+                OhlcFetchResult result = marketDataClient.fetchOhlcWindow(ticker, windowStart, windowEnd);
+                windowPlanner.record(ticker, windowStart, windowEnd, result);
+                LocalDateTime lastTime = barValidator.revalidate(ticker, result.bars());
+                if (result.rowCount() > 0 && !ohlcRepository.batchInsertBars(result.bars())) {
+                    log.warn("Dead-letter replay insert failed for {} {} -> {}", ticker.getSymbol(), windowStart, windowEnd);
+                    return Optional.empty();
+                }
+                if (lastTime != null && lastTime.isAfter(latest)) {
+                    latest = lastTime;
+                }
+                windowStart = windowEnd;
+            }
+            ohlcQueryCache.invalidate(ticker.getSymbol());
+            return Optional.of(latest);
+        } catch (CircuitOpenException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("Dead-letter replay failed for {} {} -> {}: {}", ticker.getSymbol(), windowStart, span.to(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Coalesces overlapping or adjacent windows of the same symbol so each span is fetched once.
+     */
+    private List<Span> mergeSpans(List<DeadLetter> windows) {
+        Map<String, List<DeadLetter>> bySymbol = windows.stream()
+                .filter(window -> window.getWindowFrom() != null && window.getWindowTo() != null)
+                .collect(Collectors.groupingBy(DeadLetter::getSymbol));
+        List<Span> spans = new ArrayList<>();
+        for (List<DeadLetter> entries : bySymbol.values()) {
+            entries.sort(Comparator.comparing(DeadLetter::getWindowFrom));
+            DeadLetter first = entries.getFirst();
+            Ticker ticker = Ticker.builder()
+                    .symbol(first.getSymbol())
+                    .securityId(first.getSecurityId())
+                    .exchangeSegment(first.getExchangeSegment())
+                    .instrumentType(first.getInstrumentType())
+                    .isActive(true)
+                    .build();
+            LocalDateTime from = first.getWindowFrom();
+            LocalDateTime to = first.getWindowTo();
+            List<DeadLetter> merged = new ArrayList<>();
+            for (DeadLetter entry : entries) {
+                if (entry.getWindowFrom().isAfter(to)) {
+                    spans.add(new Span(ticker, from, to, merged));
+                    from = entry.getWindowFrom();
+                    to = entry.getWindowTo();
+                    merged = new ArrayList<>();
+                } else if (entry.getWindowTo().isAfter(to)) {
+                    to = entry.getWindowTo();
+                }
+                merged.add(entry);
+            }
+            spans.add(new Span(ticker, from, to, merged));
+        }
+        return spans;
+    }
+}
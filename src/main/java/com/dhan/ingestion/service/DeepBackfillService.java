@@ -0,0 +1,234 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.client.MarketDataClient;
+import com.dhan.ingestion.client.OhlcFetchResult;
+import com.dhan.ingestion.client.OhlcInterval;
+import com.dhan.ingestion.domain.OhlcData;
+import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.repository.BackfillProgressRepository;
+import com.dhan.ingestion.repository.OhlcRepository;
+import com.dhan.ingestion.repository.TickerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds long-horizon history from coarse DhanHQ bars (5/15/25/60-minute or daily) for the range before a symbol's
+ * first 1m bar. Coarse bars are aggregated straight into the rollup {@code *_state} tables they can feed exactly;
+ * each table is fed by the coarsest configured interval that fits it, so no bucket is counted twice.
+ */
+@Service
+@Slf4j
+public class DeepBackfillService {
+
+    private static final int SESSION_OPEN_MINUTE = 9 * 60 + 15;
+
+    private enum RollupTarget {
+        FIVE_MINUTES("dhan_ohlc_5m_state", "INTERVAL 5 MINUTE", 5),
+        FIFTEEN_MINUTES("dhan_ohlc_15m_state", "INTERVAL 15 MINUTE", 15),
+        THIRTY_MINUTES("dhan_ohlc_30m_state", "INTERVAL 30 MINUTE", 30),
+        ONE_HOUR("dhan_ohlc_1h_state", "INTERVAL 1 HOUR", 60),
+        TWO_HOURS("dhan_ohlc_2h_state", "INTERVAL 2 HOUR", 120),
+        FOUR_HOURS("dhan_ohlc_4h_state", "INTERVAL 4 HOUR", 240),
+        ONE_DAY("dhan_ohlc_1d_state", "INTERVAL 1 DAY", 1440),
+        ONE_WEEK("dhan_ohlc_1w_state", "INTERVAL 1 WEEK", 1440 * 7),
+        ONE_MONTH("dhan_ohlc_1mo_state", "INTERVAL 1 MONTH", 1440 * 28);
+
+        private final String table;
+        private final String bucket;
+        private final int minutes;
+
+        RollupTarget(String table, String bucket, int minutes) {
+            this.table = table;
+            this.bucket = bucket;
+            this.minutes = minutes;
+        }
+
+        /**
+         * A bar can feed a bucket only if it never straddles a bucket boundary: intraday bars must divide the bucket
+         * and start on the 09:15 session grid (so 25m and 60m bars only feed daily and longer buckets).
+         */
+        private boolean accepts(OhlcInterval source) {
+            if (minutes >= 1440) {
+                return true;
+            }
+            return !source.isDaily() && minutes % source.minutes() == 0 && SESSION_OPEN_MINUTE % source.minutes() == 0;
+        }
+    }
+
+    private final TickerRepository tickerRepository;
+    private final OhlcRepository ohlcRepository;
+    private final BackfillProgressRepository progressRepository;
+    private final MarketDataClient marketDataClient;
+    private final OhlcQueryCache ohlcQueryCache;
+    private final LocalDateTime deepStartDate;
+    private final LocalDateTime historyStartDate;
+    private final int intradayWindowDays;
+    private final int dailyWindowDays;
+    private final int concurrency;
+    private final Map<OhlcInterval, List<RollupTarget>> targetsByInterval = new EnumMap<>(OhlcInterval.class);
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public DeepBackfillService(TickerRepository tickerRepository,
+                               OhlcRepository ohlcRepository,
+                               BackfillProgressRepository progressRepository,
+                               MarketDataClient marketDataClient,
+                               OhlcQueryCache ohlcQueryCache,
+                               @Value("${ingestion.deep-backfill.start-date:2010-01-01}") String deepStartDate,
+                               @Value("${ingestion.history.start-date}") String historyStartDate,
+                               @Value("${ingestion.deep-backfill.intervals:D}") String intervals,
+                               @Value("${ingestion.history.max-window-days:89}") int intradayWindowDays,
+                               @Value("${ingestion.deep-backfill.daily-window-days:1825}") int dailyWindowDays,
+                               @Value("${ingestion.deep-backfill.concurrency:8}") int concurrency) {
+        this.tickerRepository = tickerRepository;
+        this.ohlcRepository = ohlcRepository;
+        this.progressRepository = progressRepository;
+        this.marketDataClient = marketDataClient;
+        this.ohlcQueryCache = ohlcQueryCache;
+        this.deepStartDate = LocalDate.parse(deepStartDate).atStartOfDay();
+        this.historyStartDate = LocalDate.parse(historyStartDate).atStartOfDay();
+        this.intradayWindowDays = intradayWindowDays;
+        this.dailyWindowDays = dailyWindowDays;
+        this.concurrency = concurrency;
+
+        List<OhlcInterval> configured = Arrays.stream(intervals.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(OhlcInterval::parse)
+                .toList();
+        if (configured.contains(OhlcInterval.ONE_MINUTE)) {
+            throw new IllegalArgumentException("ingestion.deep-backfill.intervals must not include 1m; 1m bars go through regular ingestion");
+        }
+        for (RollupTarget target : RollupTarget.values()) {
+            configured.stream()
+                    .filter(target::accepts)
+                    .max((a, b) -> Integer.compare(a.minutes(), b.minutes()))
+                    .ifPresent(owner -> targetsByInterval.computeIfAbsent(owner, ignored -> new ArrayList<>()).add(target));
+        }
+    }
+
+    @Scheduled(cron = "${ingestion.deep-backfill.cron:-}", zone = "Asia/Kolkata")
+    public void backfill() {
+        if (targetsByInterval.isEmpty()) {
+            log.warn("No deep-backfill intervals configured; skipping");
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous deep backfill still running. Skipping this run.");
+            return;
+        }
+        try {
+            run();
+        } catch (Exception e) {
+            log.error("Deep backfill failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void run() throws InterruptedException {
+        Optional<Map<String, LocalDateTime>> firstBars = ohlcRepository.findFirstBarTimes();
+        Optional<Map<String, LocalDateTime>> progress = progressRepository.findAll();
+        if (firstBars.isEmpty() || progress.isEmpty()) {
+            log.warn("Could not read 1m boundaries or backfill progress; skipping deep backfill");
+            return;
+        }
+        List<Ticker> tickers = tickerRepository.findAllActive();
+        long startedAt = System.nanoTime();
+        AtomicLong calls = new AtomicLong();
+        AtomicLong bars = new AtomicLong();
+        Semaphore permits = new Semaphore(concurrency);
+        List<Callable<Void>> tasks = new ArrayList<>(tickers.size());
+        for (Ticker ticker : tickers) {
+            LocalDateTime end = upperBound(ticker, firstBars.get().get(ticker.getSymbol()));
+            tasks.add(() -> {
+                permits.acquire();
+                try {
+                    targetsByInterval.forEach((interval, targets) -> {
+                        LocalDateTime from = progress.get().getOrDefault(
+                                BackfillProgressRepository.key(ticker.getSymbol(), interval.code()), deepStartDate);
+                        backfillTicker(ticker, interval, targets, from, end, calls, bars);
+                    });
+                } finally {
+                    permits.release();
+                }
+                return null;
+            });
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.invokeAll(tasks);
+        }
+        log.info("Deep backfill finished for {} tickers: {} API calls, {} bars in {} ms (targets {})",
+                tickers.size(), calls.get(), bars.get(), (System.nanoTime() - startedAt) / 1_000_000, targetsByInterval);
+    }
+
+    /**
+     * Deep history ends at the day the 1m history starts: the first stored 1m bar, or where regular ingestion will
+     * start for a symbol that has none yet.
+     */
+    private LocalDateTime upperBound(Ticker ticker, LocalDateTime firstBar) {
+        LocalDateTime end = ticker.getLastFetchedTime() == null ? historyStartDate : ticker.getLastFetchedTime().plusMinutes(1);
+        if (firstBar != null && firstBar.isBefore(end)) {
+            end = firstBar;
+        }
+        return end.toLocalDate().atStartOfDay();
+    }
+
+    private void backfillTicker(Ticker ticker, OhlcInterval interval, List<RollupTarget> targets,
+                                LocalDateTime from, LocalDateTime end, AtomicLong calls, AtomicLong bars) {
+        int windowDays = interval.isDaily() ? dailyWindowDays : intradayWindowDays;
+        LocalDateTime windowStart = from;
+        while (windowStart.isBefore(end)) {
+            LocalDateTime windowEnd = windowStart.plusDays(windowDays);
+            if (windowEnd.isAfter(end)) {
+                windowEnd = end;
+            }
+            try {
+                OhlcFetchResult result = marketDataClient.fetchOhlcWindow(ticker, interval, windowStart, windowEnd);
+                calls.incrementAndGet();
+                LocalDateTime lower = windowStart;
+                LocalDateTime upper = windowEnd;
+                List<OhlcData> rows = result.rows().stream()
+                        .filter(row -> !row.getTime().isBefore(lower) && row.getTime().isBefore(upper))
+                        .toList();
+                for (RollupTarget target : targets) {
+                    String token = "deep|" + ticker.getSymbol() + "|" + interval.code() + "|" + windowStart + "|" + windowEnd + "|" + target.table;
+                    if (!ohlcRepository.insertRollupStates(target.table, target.bucket, rows, token)) {
+                        log.warn("Deep backfill insert into {} failed for {} {} -> {}; will retry next run",
+                                target.table, ticker.getSymbol(), windowStart, windowEnd);
+                        return;
+                    }
+                    // rollup reads of the symbol may now differ from what the query cache holds
+                    if (!rows.isEmpty()) {
+                        ohlcQueryCache.invalidate(ticker.getSymbol());
+                    }
+                }
+                bars.addAndGet(rows.size());
+            } catch (Exception e) {
+                log.warn("Deep backfill fetch failed for {} {} {} -> {}: {}", ticker.getSymbol(), interval,
+                        windowStart, windowEnd, e.getMessage());
+                return;
+            }
+            if (!progressRepository.save(ticker.getSymbol(), interval.code(), windowEnd)) {
+                return;
+            }
+            windowStart = windowEnd;
+        }
+    }
+}
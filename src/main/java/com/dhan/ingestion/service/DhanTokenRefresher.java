@@ -1,6 +1,9 @@
 package com.dhan.ingestion.service;
 
-import com.dhan.ingestion.config.AccessTokenStore;
+import com.dhan.ingestion.config.DhanCredentialPool;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,60 +15,126 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.client.RestClientResponseException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Renews each credential's token on its own timer: {@code refresh-lead-minutes} before the expiry in the token's
+ * {@code exp} claim, or every {@code refresh-fallback-hours} when the token carries no readable expiry.
+ */
 @Component
 @Slf4j
 @ConditionalOnProperty(prefix = "dhan.api", name = "refresh-enabled", havingValue = "true", matchIfMissing = true)
 public class DhanTokenRefresher implements ApplicationRunner {
     private final RestClient dhanRestClient;
-    private final AccessTokenStore accessTokenStore;
+    private final DhanCredentialPool credentialPool;
     private final ConfigurableApplicationContext context;
     private final String baseUrl;
-    private final String clientId;
-    private final AtomicBoolean refreshInProgress = new AtomicBoolean(false);
+    private final Duration lead;
+    private final Duration fallbackInterval;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService renewals = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("dhan-token-renewal").daemon().factory());
 
     public DhanTokenRefresher(@Qualifier("dhanRestClient") RestClient dhanRestClient,
-                              AccessTokenStore accessTokenStore,
+                              DhanCredentialPool credentialPool,
                               ConfigurableApplicationContext context,
                               @Value("${dhan.api.base-url}") String baseUrl,
-                              @Value("${dhan.api.client-id}") String clientId) {
+                              @Value("${dhan.api.refresh-lead-minutes:60}") long leadMinutes,
+                              @Value("${dhan.api.refresh-fallback-hours:12}") long fallbackHours) {
         this.dhanRestClient = dhanRestClient;
-        this.accessTokenStore = accessTokenStore;
+        this.credentialPool = credentialPool;
         this.context = context;
         this.baseUrl = baseUrl;
-        this.clientId = clientId;
+        this.lead = Duration.ofMinutes(Math.max(1, leadMinutes));
+        this.fallbackInterval = Duration.ofHours(Math.max(1, fallbackHours));
     }
 
     @Override
     public void run(ApplicationArguments args) {
-        scheduledRenew();
+        for (DhanCredentialPool.Credential credential : credentialPool.credentials()) {
+            if (!renew(credential)) {
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        renewals.shutdownNow();
+    }
+
+    /**
+     * Renews the credential and schedules its next renewal; a credential that cannot be renewed leaves the pool, and
+     * the service stops when it was the last one. Returns {@code false} once the service is stopping.
+     */
+    private boolean renew(DhanCredentialPool.Credential credential) {
+        String failure = renewToken(credential);
+        if (failure != null) {
+            if (credentialPool.remove(credential, failure) == 0) {
+                stopService(failure);
+                return false;
+            }
+            return true;
+        }
+        Duration delay = nextRenewal(credential.getAccessToken());
+        log.info("Next DhanHQ token renewal for client {} in {} min", credential.getClientId(), delay.toMinutes());
+        renewals.schedule(() -> renew(credential), delay.toMillis(), TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * {@code lead} before the token expires, or half its remaining lifetime when that is shorter than twice the
+     * lead; {@code fallbackInterval} when the expiry is unknown. Never less than a minute.
+     */
+    private Duration nextRenewal(String token) {
+        Instant expiry = expiry(token);
+        if (expiry == null) {
+            return fallbackInterval;
+        }
+        Duration remaining = Duration.between(Instant.now(), expiry);
+        Duration delay = remaining.compareTo(lead.multipliedBy(2)) > 0 ? remaining.minus(lead) : remaining.dividedBy(2);
+        return delay.compareTo(Duration.ofMinutes(1)) < 0 ? Duration.ofMinutes(1) : delay;
     }
 
-    @Scheduled(fixedDelay = 43_200_000L, initialDelay = 43_200_000L)
-    public void scheduledRenew() {
-        if (!refreshInProgress.compareAndSet(false, true)) {
-            return;
+    /**
+     * The {@code exp} claim of a JWT access token, or {@code null} when the token is not a JWT or has none.
+     */
+    private Instant expiry(String token) {
+        String[] parts = token == null ? new String[0] : token.split("\\.");
+        if (parts.length < 2) {
+            return null;
         }
         try {
-            renewTokenOrStop();
-        } finally {
-            refreshInProgress.set(false);
+            JsonNode claims = objectMapper.readTree(new String(Base64.getUrlDecoder().decode(parts[1]),
+                    StandardCharsets.UTF_8));
+            JsonNode exp = claims.get("exp");
+            return exp != null && exp.canConvertToLong() ? Instant.ofEpochSecond(exp.asLong()) : null;
+        } catch (Exception e) {
+            log.warn("Could not read the expiry of a DhanHQ access token: {}", e.getMessage());
+            return null;
         }
     }
 
-    private void renewTokenOrStop() {
+    /**
+     * Returns {@code null} when the credential's token was renewed, otherwise why it could not be.
+     */
+    private String renewToken(DhanCredentialPool.Credential credential) {
+        String clientId = credential.getClientId();
         try {
-            String token = accessTokenStore.getAccessToken();
-            if (token == null || token.isBlank()) {
-                stopService("Missing DhanHQ access token");
-                return;
+            String token = credential.getAccessToken();
+            if (token == null) {
+                return "Missing DhanHQ access token for client " + clientId;
             }
 
             ResponseEntity<Map<String, Object>> response = dhanRestClient.get()
@@ -77,24 +146,25 @@ public class DhanTokenRefresher implements ApplicationRunner {
                     .toEntity(new ParameterizedTypeReference<Map<String, Object>>() {});
 
             if (response.getStatusCode().value() != 200) {
-                stopService("DhanHQ RenewToken returned status=" + response.getStatusCode().value());
-                return;
+                return "DhanHQ RenewToken returned status=" + response.getStatusCode().value() + " for client " + clientId;
             }
 
             Map<String, Object> body = response.getBody();
             String newToken = extractAccessToken(body);
             if (newToken == null || newToken.isBlank()) {
-                stopService("DhanHQ RenewToken response missing access token");
-                return;
+                return "DhanHQ RenewToken response missing access token for client " + clientId;
             }
 
-            accessTokenStore.setAccessToken(newToken);
-            System.setProperty("ACCESS_TOKEN", newToken);
-            log.info("DhanHQ access token refreshed");
+            credential.setAccessToken(newToken);
+            if (credential.isPrimary()) {
+                System.setProperty("ACCESS_TOKEN", newToken);
+            }
+            log.info("DhanHQ access token refreshed for client {}", clientId);
+            return null;
         } catch (RestClientResponseException e) {
-            stopService("DhanHQ RenewToken failed (status=" + e.getStatusCode().value() + ")");
+            return "DhanHQ RenewToken failed (status=" + e.getStatusCode().value() + ") for client " + clientId;
         } catch (Exception e) {
-            stopService("DhanHQ RenewToken failed (" + e.getClass().getSimpleName() + ")");
+            return "DhanHQ RenewToken failed (" + e.getClass().getSimpleName() + ") for client " + clientId;
         }
     }
 
@@ -0,0 +1,158 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.domain.FreshnessSnapshot;
+import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.repository.FreshnessRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live per-symbol freshness lag: how far each active symbol's ingestion cursor trails the bellwether. The index is
+ * refreshed from every scheduler pass and from each cursor advance, and is periodically summarized per segment
+ * (percentiles, a lag histogram, SLO breaches and the worst laggards) into {@code ingestion_freshness}.
+ */
+@Service
+@Slf4j
+public class FreshnessMonitor {
+
+    /**
+     * Upper bounds (minutes) of the lag histogram buckets; one more bucket holds everything beyond the last.
+     */
+    static final long[] BUCKET_MINUTES = {1, 2, 5, 10, 15, 30, 60, 240, 1440};
+
+    private record Position(String exchangeSegment, LocalDateTime cursor) {
+    }
+
+    private record Lag(String symbol, long seconds) {
+    }
+
+    private final FreshnessRepository freshnessRepository;
+    private final long sloSeconds;
+    private final int laggardCount;
+    private final Map<String, Position> positions = new ConcurrentHashMap<>();
+    private volatile LocalDateTime bellwetherTime;
+    private volatile boolean dirty;
+
+    public FreshnessMonitor(FreshnessRepository freshnessRepository,
+                            @Value("${ingestion.freshness.slo-minutes:15}") int sloMinutes,
+                            @Value("${ingestion.freshness.laggards:10}") int laggardCount) {
+        this.freshnessRepository = freshnessRepository;
+        this.sloSeconds = sloMinutes * 60L;
+        this.laggardCount = laggardCount;
+    }
+
+    /**
+     * Replaces the index with the active tickers seen by a scheduler pass.
+     */
+    public void observe(List<Ticker> activeTickers, LocalDateTime bellwetherTime) {
+        Set<String> active = new HashSet<>(activeTickers.size() * 2);
+        for (Ticker ticker : activeTickers) {
+            active.add(ticker.getSymbol());
+            if (ticker.getLastFetchedTime() != null) {
+                positions.merge(ticker.getSymbol(), new Position(ticker.getExchangeSegment(), ticker.getLastFetchedTime()),
+                        FreshnessMonitor::later);
+            }
+        }
+        positions.keySet().retainAll(active);
+        this.bellwetherTime = bellwetherTime;
+        dirty = true;
+    }
+
+    public void recordCursor(Ticker ticker, LocalDateTime cursor) {
+        positions.merge(ticker.getSymbol(), new Position(ticker.getExchangeSegment(), cursor), FreshnessMonitor::later);
+        dirty = true;
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.freshness.snapshot-interval-ms:60000}",
+            initialDelayString = "${ingestion.freshness.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        LocalDateTime reference = bellwetherTime;
+        if (reference == null || !dirty || positions.isEmpty()) {
+            return;
+        }
+        dirty = false;
+
+        Map<String, List<Lag>> bySegment = new TreeMap<>();
+        List<Lag> all = new ArrayList<>(positions.size());
+        positions.forEach((symbol, position) -> {
+            Lag lag = new Lag(symbol, Math.max(0L, Duration.between(position.cursor(), reference).toSeconds()));
+            all.add(lag);
+            bySegment.computeIfAbsent(String.valueOf(position.exchangeSegment()), ignored -> new ArrayList<>()).add(lag);
+        });
+
+        LocalDateTime now = LocalDateTime.now(ZoneId.of("Asia/Kolkata")).truncatedTo(ChronoUnit.SECONDS);
+        List<FreshnessSnapshot> snapshots = new ArrayList<>(bySegment.size() + 1);
+        snapshots.add(summarize(FreshnessSnapshot.ALL_SEGMENTS, all, now, reference));
+        bySegment.forEach((segment, lags) -> snapshots.add(summarize(segment, lags, now, reference)));
+
+        FreshnessSnapshot overall = snapshots.getFirst();
+        log.info("Freshness vs bellwether {}: {} symbols, p50={}s p95={}s max={}s, {} beyond the {}s SLO (worst: {})",
+                reference, overall.getSymbols(), overall.getP50LagSeconds(), overall.getP95LagSeconds(),
+                overall.getMaxLagSeconds(), overall.getBreaching(), sloSeconds, overall.getLaggards());
+        freshnessRepository.insertSnapshots(snapshots);
+    }
+
+    private FreshnessSnapshot summarize(String segment, List<Lag> lags, LocalDateTime now, LocalDateTime reference) {
+        lags.sort(Comparator.comparingLong(Lag::seconds));
+        Integer[] histogram = new Integer[BUCKET_MINUTES.length + 1];
+        Arrays.fill(histogram, 0);
+        int breaching = 0;
+        for (Lag lag : lags) {
+            histogram[bucket(lag.seconds())]++;
+            if (lag.seconds() > sloSeconds) {
+                breaching++;
+            }
+        }
+        List<String> laggards = new ArrayList<>(Math.min(laggardCount, breaching));
+        for (int i = lags.size() - 1; i >= 0 && laggards.size() < laggardCount && lags.get(i).seconds() > sloSeconds; i--) {
+            laggards.add(lags.get(i).symbol());
+        }
+        return FreshnessSnapshot.builder()
+                .snapshotTime(now)
+                .bellwetherTime(reference)
+                .exchangeSegment(segment)
+                .symbols(lags.size())
+                .breaching(breaching)
+                .sloSeconds(sloSeconds)
+                .p50LagSeconds(percentile(lags, 0.50))
+                .p95LagSeconds(percentile(lags, 0.95))
+                .maxLagSeconds(lags.getLast().seconds())
+                .lagHistogram(Arrays.asList(histogram))
+                .laggards(laggards)
+                .build();
+    }
+
+    private static int bucket(long lagSeconds) {
+        for (int i = 0; i < BUCKET_MINUTES.length; i++) {
+            if (lagSeconds <= BUCKET_MINUTES[i] * 60) {
+                return i;
+            }
+        }
+        return BUCKET_MINUTES.length;
+    }
+
+    private static long percentile(List<Lag> sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))).seconds();
+    }
+
+    private static Position later(Position current, Position candidate) {
+        return candidate.cursor().isAfter(current.cursor()) ? candidate : current;
+    }
+}
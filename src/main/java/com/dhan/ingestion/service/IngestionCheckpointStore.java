@@ -0,0 +1,79 @@
+package com.dhan.ingestion.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Persists the syncs that were still pending at shutdown so the next start resumes them instead of waiting for
+ * the next full scheduler cycle.
+ */
+@Component
+@Slf4j
+public class IngestionCheckpointStore {
+
+    public record Entry(String symbol, String securityId, String exchangeSegment, String instrumentType,
+                        LocalDateTime cursor, LocalDateTime endTime) {
+
+        public Entry withCursor(LocalDateTime newCursor) {
+            return new Entry(symbol, securityId, exchangeSegment, instrumentType, newCursor, endTime);
+        }
+    }
+
+    public record Checkpoint(LocalDateTime writtenAt, List<Entry> entries) {
+    }
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+
+    public IngestionCheckpointStore(@Value("${ingestion.checkpoint.path:state/ingestion-checkpoint.json}") String path) {
+        this.path = Path.of(path);
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    public void write(List<Entry> entries) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), new Checkpoint(LocalDateTime.now(), entries));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote ingestion checkpoint with {} pending syncs to {}", entries.size(), path);
+        } catch (IOException e) {
+            log.error("Failed to write ingestion checkpoint to {}", path, e);
+        }
+    }
+
+    /**
+     * Reads and removes the checkpoint; a checkpoint is only ever resumed once.
+     */
+    public List<Entry> consume() {
+        if (!Files.exists(path)) {
+            return List.of();
+        }
+        try {
+            Checkpoint checkpoint = objectMapper.readValue(path.toFile(), Checkpoint.class);
+            Files.deleteIfExists(path);
+            log.info("Loaded ingestion checkpoint written at {} with {} pending syncs",
+                    checkpoint.writtenAt(), checkpoint.entries() == null ? 0 : checkpoint.entries().size());
+            return checkpoint.entries() == null ? List.of() : checkpoint.entries();
+        } catch (IOException e) {
+            log.error("Failed to read ingestion checkpoint from {}; ignoring it", path, e);
+            return List.of();
+        }
+    }
+}
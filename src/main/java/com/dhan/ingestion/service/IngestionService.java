@@ -1,96 +1,200 @@
 package com.dhan.ingestion.service;
 
 import com.dhan.ingestion.client.MarketDataClient;
-import com.dhan.ingestion.domain.OhlcData;
+import com.dhan.ingestion.client.OhlcFetchResult;
 import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.repository.DeadLetterRepository;
 import com.dhan.ingestion.repository.OhlcRepository;
 import com.dhan.ingestion.repository.TickerRepository;
+import com.dhan.ingestion.resilience.Bulkhead;
+import com.dhan.ingestion.resilience.CircuitBreakers;
+import com.dhan.ingestion.resilience.CircuitOpenException;
+import com.dhan.ingestion.resilience.InsertThrottle;
+import com.dhan.ingestion.resilience.MemoryBudget;
+import com.dhan.ingestion.resilience.SegmentBulkheads;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IngestionService {
+    private static final long DEFAULT_RESPONSE_BYTES_PER_ROW = 64;
+
     private final TickerRepository tickerRepository;
     private final OhlcRepository ohlcRepository;
     private final MarketDataClient marketDataClient;
+    private final OhlcQueryCache ohlcQueryCache;
+    private final SegmentBulkheads segmentBulkheads;
+    private final IngestionCheckpointStore checkpointStore;
+    private final WindowPlanner windowPlanner;
+    private final DeadLetterRepository deadLetterRepository;
+    private final FreshnessMonitor freshnessMonitor;
+    private final InsertThrottle insertThrottle;
+    private final MemoryBudget memoryBudget;
+    private final BarValidator barValidator;
+    private final NegativeResultCache negativeResultCache;
+    private final CircuitBreakers circuitBreakers;
 
     @Value("${ingestion.history.start-date}")
     private String defaultStartDateStr;
 
-    @Value("${ingestion.concurrent.max-tasks:200}")
-    private int maxConcurrentTasks;
+    @Value("${ingestion.shutdown.drain-timeout-seconds:30}")
+    private long drainTimeoutSeconds;
 
-    @Value("${ingestion.history.max-window-days:89}")
-    private int maxWindowDays;
+    @Value("${ingestion.memory-budget.row-heap-bytes:480}")
+    private long rowHeapBytes;
 
     private ExecutorService executor;
-    private Semaphore concurrencyLimit;
     private LocalDateTime defaultStartDate;
-    private int maxWindowMinutes;
     private Set<String> inFlightSymbols;
+    private Map<String, IngestionCheckpointStore.Entry> pendingSyncs;
+    private volatile boolean draining;
 
     @PostConstruct
     public void init() {
         this.executor = Executors.newVirtualThreadPerTaskExecutor();
-        this.concurrencyLimit = new Semaphore(maxConcurrentTasks);
         this.inFlightSymbols = ConcurrentHashMap.newKeySet();
+        this.pendingSyncs = new ConcurrentHashMap<>();
         LocalDate parsed = LocalDate.parse(defaultStartDateStr);
         this.defaultStartDate = parsed.atStartOfDay();
-        this.maxWindowMinutes = maxWindowDays * 24 * 60;
     }
 
+    /**
+     * Stops admitting work, lets in-flight windows finish for up to the drain timeout, then checkpoints every
+     * sync that did not complete.
+     */
     @PreDestroy
     public void shutdown() {
-        if (executor != null) {
-            executor.shutdown();
+        draining = true;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(drainTimeoutSeconds, TimeUnit.SECONDS)) {
+                log.warn("Drain timed out after {}s; interrupting remaining syncs", drainTimeoutSeconds);
+                executor.shutdownNow();
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        List<IngestionCheckpointStore.Entry> pending = List.copyOf(pendingSyncs.values());
+        if (!pending.isEmpty()) {
+            checkpointStore.write(pending);
         }
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeFromCheckpoint() {
+        List<IngestionCheckpointStore.Entry> entries = checkpointStore.consume();
+        if (entries.isEmpty()) {
+            return;
+        }
+        log.info("Resuming {} syncs from checkpoint", entries.size());
+        Map<LocalDateTime, List<Ticker>> tickersByEnd = entries.stream()
+                .filter(entry -> entry.endTime() != null)
+                .collect(Collectors.groupingBy(IngestionCheckpointStore.Entry::endTime,
+                        Collectors.mapping(this::toTicker, Collectors.toList())));
+        tickersByEnd.forEach((endTime, tickers) -> processTickersParallel(tickers, endTime));
+    }
+
+    /**
+     * Waits until every submitted sync has finished or been checkpointed; returns {@code false} on timeout.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!pendingSyncs.isEmpty()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    public boolean isSyncing(String symbol) {
+        return inFlightSymbols.contains(symbol);
+    }
+
     public void processTickersParallel(List<Ticker> tickers, LocalDateTime endTime) {
-        log.info("Starting parallel sync for {} tickers...", tickers.size());
+        submit(tickers, endTime, false);
+    }
+
+    /**
+     * Live-edge syncs from the continuous scheduler. It backs idle symbols off on its own, so these neither skip
+     * nor count towards the negative cache's back-off.
+     */
+    public void processContinuous(List<Ticker> tickers, LocalDateTime endTime) {
+        submit(tickers, endTime, true);
+    }
+
+    private void submit(List<Ticker> tickers, LocalDateTime endTime, boolean continuous) {
+        if (draining) {
+            log.warn("Shutting down; not admitting {} tickers", tickers.size());
+            return;
+        }
+        if (circuitBreakers.isRejecting()) {
+            log.warn("A dependency circuit is open; not admitting {} tickers this run", tickers.size());
+            return;
+        }
+        if (continuous) {
+            log.debug("Starting continuous sync for {} tickers...", tickers.size());
+        } else {
+            log.info("Starting parallel sync for {} tickers...", tickers.size());
+        }
 
         for (Ticker ticker : tickers) {
+            pendingSyncs.putIfAbsent(ticker.getSymbol(), toEntry(ticker, ticker.getLastFetchedTime(), endTime));
             executor.submit(() -> {
-                boolean acquired = false;
-                try {
-                    concurrencyLimit.acquire();
-                    acquired = true;
-                    syncTicker(ticker, endTime);
+                if (draining) {
+                    return;
+                }
+                try (Bulkhead.Lease ignored = segmentBulkheads.acquireTask(ticker.getExchangeSegment())) {
+                    if (draining) {
+                        return;
+                    }
+                    syncTicker(ticker, endTime, continuous);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     log.warn("Interrupted while waiting to schedule {}", ticker.getSymbol());
-                } finally {
-                    if (acquired) {
-                        concurrencyLimit.release();
-                    }
                 }
             });
         }
     }
 
-    private void syncTicker(Ticker ticker, LocalDateTime endTime) {
+    private void syncTicker(Ticker ticker, LocalDateTime endTime, boolean continuous) {
         String symbol = ticker.getSymbol();
         if (!inFlightSymbols.add(symbol)) {
             log.info("Skipping {} since a sync is already running", symbol);
             return;
         }
 
+        boolean completed = false;
+        LocalDateTime windowStart = null;
+        LocalDateTime windowEnd = null;
+        pendingSyncs.put(symbol, toEntry(ticker, ticker.getLastFetchedTime(), endTime));
         try {
             LocalDateTime baseTime = ticker.getLastFetchedTime();
             if (baseTime == null) {
@@ -102,38 +206,116 @@ public class IngestionService {
 
             if (!start.isBefore(end)) {
                 log.debug("Skipping {} since cursor {} is not before end {}", symbol, start, end);
+                completed = true;
+                return;
+            }
+            if (!continuous && negativeResultCache.isBackingOff(ticker)) {
+                log.debug("Skipping {} while it backs off after returning no data", symbol);
+                completed = true;
                 return;
             }
 
-            LocalDateTime windowStart = start;
+            boolean gotData = false;
+            boolean emptyLiveEdge = false;
+            windowStart = start;
             while (windowStart.isBefore(end)) {
-                LocalDateTime windowEnd = windowStart.plusMinutes(maxWindowMinutes);
-                if (windowEnd.isAfter(end)) {
-                    windowEnd = end;
+                if (draining) {
+                    log.info("Stopping {} at {} for shutdown", symbol, windowStart);
+                    return;
                 }
 
+                windowEnd = windowPlanner.nextWindowEnd(ticker, windowStart, end);
+
                 if (!windowStart.isBefore(windowEnd)) {
                     log.debug("Skipping {} since window start {} is not before end {}", symbol, windowStart, windowEnd);
                     break;
                 }
+                if (negativeResultCache.isKnownEmpty(ticker, windowStart, windowEnd)) {
+                    log.debug("Skipping {} window {} -> {} known to be empty", symbol, windowStart, windowEnd);
+                    windowStart = windowEnd;
+                    continue;
+                }
 
-                log.info("Fetching {} window {} -> {}", symbol, windowStart, windowEnd);
+                insertThrottle.awaitCapacity();
+                try (MemoryBudget.Reservation reservation = memoryBudget.reserve(estimatedFootprint(ticker, windowStart, windowEnd))) {
+                    log.info("Fetching {} window {} -> {}", symbol, windowStart, windowEnd);
 
-                List<OhlcData> data = marketDataClient.fetchOhlc(ticker, windowStart, windowEnd);
+                    OhlcFetchResult result = marketDataClient.fetchOhlcWindow(ticker, windowStart, windowEnd);
+                    windowPlanner.record(ticker, windowStart, windowEnd, result);
+                    reservation.resize(footprint(result));
+                    LocalDateTime lastTime = barValidator.validate(ticker, result.bars());
 
-                if (!data.isEmpty()) {
-                    ohlcRepository.batchInsertOhlc(data);
-                    LocalDateTime lastTime = data.getLast().getTime();
-                    tickerRepository.updateTickerCursor(symbol, lastTime);
+                    if (lastTime != null) {
+                        if (result.rowCount() > 0 && !ohlcRepository.batchInsertBars(result.bars())) {
+                            throw new IllegalStateException("Insert failed; cursor not advanced");
+                        }
+                        tickerRepository.updateTickerCursor(symbol, lastTime);
+                        freshnessMonitor.recordCursor(ticker, lastTime);
+                        ohlcQueryCache.invalidate(symbol);
+                        pendingSyncs.computeIfPresent(symbol, (key, entry) -> entry.withCursor(lastTime));
+                        negativeResultCache.recordData(ticker);
+                        gotData = true;
+                        emptyLiveEdge = false;
+                    } else if (!draining && !Thread.currentThread().isInterrupted()) {
+                        emptyLiveEdge = negativeResultCache.recordEmpty(ticker, windowStart, windowEnd, end);
+                    }
                 }
 
                 windowStart = windowEnd;
             }
+            if (!continuous && !gotData && emptyLiveEdge) {
+                negativeResultCache.recordEmptySync(ticker, end);
+            }
+            completed = true;
 
+        } catch (CircuitOpenException e) {
+            // the cursor still points at the last stored window, so the next run resumes here; not a dead letter
+            log.debug("Stopping {} at window {} -> {}: {}", symbol, windowStart, windowEnd, e.getMessage());
+            completed = !draining;
         } catch (Exception e) {
-            log.error("Failed to sync {}", symbol, e);
+            log.error("Failed to sync {} at window {} -> {}", symbol, windowStart, windowEnd, e);
+            completed = !draining;
+            if (completed && windowStart != null && windowEnd != null) {
+                deadLetterRepository.recordWindow(ticker, windowStart, windowEnd, String.valueOf(e.getMessage()));
+            }
         } finally {
+            if (completed) {
+                pendingSyncs.remove(symbol);
+            }
             inFlightSymbols.remove(symbol);
         }
     }
+
+    /**
+     * Heap held while a window is in flight: the parsed rows plus the response body and the insert payload, each
+     * about the response size. Before the first response for a symbol a typical JSON size per bar is assumed.
+     */
+    private long estimatedFootprint(Ticker ticker, LocalDateTime from, LocalDateTime to) {
+        double rows = windowPlanner.expectedRows(ticker, from, to);
+        double responseBytesPerRow = windowPlanner.bytesPerRow(ticker.getSymbol());
+        if (responseBytesPerRow <= 0) {
+            responseBytesPerRow = DEFAULT_RESPONSE_BYTES_PER_ROW;
+        }
+        return (long) (rows * (rowHeapBytes + 2 * responseBytesPerRow));
+    }
+
+    private long footprint(OhlcFetchResult result) {
+        return result.rowCount() * rowHeapBytes + 2 * result.responseBytes();
+    }
+
+    private IngestionCheckpointStore.Entry toEntry(Ticker ticker, LocalDateTime cursor, LocalDateTime endTime) {
+        return new IngestionCheckpointStore.Entry(ticker.getSymbol(), ticker.getSecurityId(),
+                ticker.getExchangeSegment(), ticker.getInstrumentType(), cursor, endTime);
+    }
+
+    private Ticker toTicker(IngestionCheckpointStore.Entry entry) {
+        return Ticker.builder()
+                .symbol(entry.symbol())
+                .securityId(entry.securityId())
+                .exchangeSegment(entry.exchangeSegment())
+                .instrumentType(entry.instrumentType())
+                .lastFetchedTime(entry.cursor())
+                .isActive(true)
+                .build();
+    }
 }
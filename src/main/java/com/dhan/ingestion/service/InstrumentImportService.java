@@ -0,0 +1,238 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.domain.Ticker;
+import com.dhan.ingestion.repository.TickerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps {@code tickers} in line with the DhanHQ scrip master (api-scrip-master.csv). The CSV is streamed and only
+ * rows in the configured segments are materialized; they are diffed against the latest ticker versions by
+ * segment and security id. New symbols are written as one insert; instrument type changes and deactivations are
+ * applied to existing tickers as one mutation, so they never carry a stale cursor over one the ingestion path has
+ * since moved.
+ */
+@Service
+@Slf4j
+public class InstrumentImportService {
+
+    private static final String EXCHANGE_COLUMN = "SEM_EXM_EXCH_ID";
+    private static final String SEGMENT_COLUMN = "SEM_SEGMENT";
+    private static final String SECURITY_ID_COLUMN = "SEM_SMST_SECURITY_ID";
+    private static final String INSTRUMENT_COLUMN = "SEM_INSTRUMENT_NAME";
+    private static final String TRADING_SYMBOL_COLUMN = "SEM_TRADING_SYMBOL";
+
+    private final TickerRepository tickerRepository;
+    private final String path;
+    private final Set<String> segments;
+    private final boolean activateNew;
+    private final boolean deactivateMissing;
+    private final LocalDateTime defaultStartDate;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public InstrumentImportService(TickerRepository tickerRepository,
+                                   @Value("${ingestion.instrument-import.path:}") String path,
+                                   @Value("${ingestion.instrument-import.segments:NSE_EQ,IDX_I}") String segments,
+                                   @Value("${ingestion.instrument-import.activate-new:false}") boolean activateNew,
+                                   @Value("${ingestion.instrument-import.deactivate-missing:true}") boolean deactivateMissing,
+                                   @Value("${ingestion.history.start-date}") String defaultStartDate) {
+        this.tickerRepository = tickerRepository;
+        this.path = path;
+        this.segments = Arrays.stream(segments.split(","))
+                .map(String::trim)
+                .filter(segment -> !segment.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.activateNew = activateNew;
+        this.deactivateMissing = deactivateMissing;
+        this.defaultStartDate = LocalDate.parse(defaultStartDate).atStartOfDay();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void importOnStartup() {
+        if (!path.isBlank()) {
+            importInstruments();
+        }
+    }
+
+    @Scheduled(cron = "${ingestion.instrument-import.cron:-}", zone = "Asia/Kolkata")
+    public void importInstruments() {
+        if (path.isBlank()) {
+            log.warn("ingestion.instrument-import.path is not set; skipping instrument import");
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous instrument import still running. Skipping this run.");
+            return;
+        }
+        try {
+            importFrom(Path.of(path));
+        } catch (Exception e) {
+            log.error("Instrument import from {} failed", path, e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void importFrom(Path file) throws IOException {
+        long startedAt = System.nanoTime();
+        Map<String, Ticker> existingByKey = new HashMap<>();
+        Set<String> existingSymbols = new HashSet<>();
+        for (Ticker ticker : tickerRepository.findAll()) {
+            existingSymbols.add(ticker.getSymbol());
+            if (ticker.getSecurityId() != null && ticker.getExchangeSegment() != null) {
+                existingByKey.put(key(ticker.getExchangeSegment(), ticker.getSecurityId()), ticker);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Ticker> additions = new ArrayList<>();
+        Map<String, String> typeChanges = new HashMap<>();
+        Set<String> deactivations = new HashSet<>();
+        Set<String> seenKeys = new HashSet<>();
+        long scanned = 0;
+        int added = 0;
+        int updated = 0;
+
+        try (ScripMasterReader reader = new ScripMasterReader(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (!reader.next()) {
+                log.warn("Instrument master {} is empty", file);
+                return;
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < reader.fieldCount(); i++) {
+                columns.put(reader.field(i), i);
+            }
+            int exchange = column(columns, EXCHANGE_COLUMN);
+            int segment = column(columns, SEGMENT_COLUMN);
+            int securityId = column(columns, SECURITY_ID_COLUMN);
+            int instrument = column(columns, INSTRUMENT_COLUMN);
+            int tradingSymbol = column(columns, TRADING_SYMBOL_COLUMN);
+
+            while (reader.next()) {
+                scanned++;
+                String exchangeSegment = exchangeSegment(reader.byteAt(exchange, 0), reader.byteAt(segment, 0));
+                if (exchangeSegment == null || !segments.contains(exchangeSegment)) {
+                    continue;
+                }
+                String id = reader.field(securityId);
+                String symbolName = reader.field(tradingSymbol);
+                if (id.isEmpty() || symbolName.isEmpty()) {
+                    log.debug("Skipping instrument master line {} without security id or trading symbol", reader.lineNumber());
+                    continue;
+                }
+                String instrumentType = reader.field(instrument);
+                String key = key(exchangeSegment, id);
+                if (!seenKeys.add(key)) {
+                    continue;
+                }
+
+                Ticker existing = existingByKey.get(key);
+                if (existing == null) {
+                    String symbol = symbolFor(exchangeSegment, reader.byteAt(exchange, 0), symbolName);
+                    if (!existingSymbols.add(symbol)) {
+                        symbol = symbol + "_" + id;
+                        existingSymbols.add(symbol);
+                    }
+                    additions.add(Ticker.builder()
+                            .symbol(symbol)
+                            .securityId(id)
+                            .exchangeSegment(exchangeSegment)
+                            .instrumentType(instrumentType)
+                            .lastFetchedTime(defaultStartDate)
+                            .isActive(activateNew)
+                            .updatedAt(now)
+                            .build());
+                    added++;
+                } else if (!Objects.equals(existing.getInstrumentType(), instrumentType)) {
+                    typeChanges.put(existing.getSymbol(), instrumentType);
+                    updated++;
+                }
+            }
+        }
+
+        int deactivated = 0;
+        if (deactivateMissing) {
+            for (Map.Entry<String, Ticker> entry : existingByKey.entrySet()) {
+                Ticker ticker = entry.getValue();
+                if (segments.contains(ticker.getExchangeSegment()) && Boolean.TRUE.equals(ticker.getIsActive())
+                        && !seenKeys.contains(entry.getKey())) {
+                    deactivations.add(ticker.getSymbol());
+                    deactivated++;
+                }
+            }
+        }
+
+        if (!additions.isEmpty() && !tickerRepository.insertTickers(additions)) {
+            return;
+        }
+        if (!tickerRepository.updateTickerAttributes(typeChanges, deactivations)) {
+            return;
+        }
+        log.info("Imported instrument master {}: {} rows scanned, {} in {}; {} added, {} updated, {} deactivated in {} ms",
+                file, scanned, seenKeys.size(), segments, added, updated, deactivated,
+                (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    private static int column(Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Instrument master is missing column " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Maps the scrip master's exchange id and segment code to the DhanHQ API exchange segment.
+     */
+    private static String exchangeSegment(byte exchange, byte segment) {
+        return switch (exchange) {
+            case 'N' -> switch (segment) {
+                case 'E' -> "NSE_EQ";
+                case 'D' -> "NSE_FNO";
+                case 'C' -> "NSE_CURRENCY";
+                case 'I' -> "IDX_I";
+                default -> null;
+            };
+            case 'B' -> switch (segment) {
+                case 'E' -> "BSE_EQ";
+                case 'D' -> "BSE_FNO";
+                case 'C' -> "BSE_CURRENCY";
+                case 'I' -> "IDX_I";
+                default -> null;
+            };
+            case 'M' -> segment == 'M' ? "MCX_COMM" : null;
+            default -> null;
+        };
+    }
+
+    private static String symbolFor(String exchangeSegment, byte exchange, String tradingSymbol) {
+        String prefix = "IDX_I".equals(exchangeSegment) ? (exchange == 'B' ? "BSE_IDX" : "NSE_IDX") : exchangeSegment;
+        return prefix + "_" + tradingSymbol.replace(' ', '_');
+    }
+
+    private static String key(String exchangeSegment, String securityId) {
+        return exchangeSegment + "|" + securityId;
+    }
+}
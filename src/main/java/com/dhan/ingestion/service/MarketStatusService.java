@@ -5,6 +5,7 @@ import com.dhan.ingestion.domain.MarketStatus;
 import com.dhan.ingestion.domain.OhlcData;
 import com.dhan.ingestion.domain.Ticker;
 import com.dhan.ingestion.repository.TickerRepository;
+import com.dhan.ingestion.resilience.CircuitOpenException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,6 +15,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -69,12 +71,53 @@ public class MarketStatusService {
             }
 
             return MarketStatus.ACTIVE;
+        } catch (CircuitOpenException e) {
+            log.warn("Could not check market status: {}", e.getMessage());
+            return MarketStatus.ERROR;
         } catch (Exception e) {
             log.error("Error checking market status", e);
             return MarketStatus.ERROR;
         }
     }
 
+    /**
+     * Latest bellwether bar in {@code [from, to)} from one short fetch, moving the bellwether cursor like
+     * {@link #getMarketStatus()}. Empty when it has no bar there (holiday, pre-open, delayed feed) or the fetch
+     * failed; throws {@link CircuitOpenException} while the DhanHQ or ClickHouse circuit is open.
+     */
+    public Optional<LocalDateTime> latestBellwetherBar(LocalDateTime from, LocalDateTime to) {
+        String symbol = bellwetherSymbolRaw;
+        try {
+            Optional<Ticker> bellwether = tickerRepository.findBySymbol(symbol);
+            if (bellwether.isEmpty()) {
+                log.error("Bellwether symbol {} not found in DB", symbol);
+                return Optional.empty();
+            }
+            List<OhlcData> data = marketDataClient.fetchOhlc(bellwether.get(), from, to);
+            if (data.isEmpty()) {
+                return Optional.empty();
+            }
+            LocalDateTime latest = data.getLast().getTime();
+            LocalDateTime previous = lastBellwetherTime;
+            if (previous == null || latest.isAfter(previous)) {
+                lastBellwetherTime = latest;
+                if (updateBellwetherCursor) {
+                    tickerRepository.updateTickerCursor(symbol, latest);
+                }
+            }
+            return Optional.of(latest);
+        } catch (CircuitOpenException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error probing bellwether {} for {} -> {}", symbol, from, to, e);
+            return Optional.empty();
+        }
+    }
+
+    public String getBellwetherSymbol() {
+        return bellwetherSymbolRaw;
+    }
+
     public LocalDateTime getLastBellwetherTime() {
         return lastBellwetherTime;
     }
@@ -0,0 +1,294 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.domain.Ticker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers windows for which DhanHQ returned no bars, so illiquid, suspended or delisted tickers stop costing API
+ * calls and permits. Settled empty windows (ending {@code settle-minutes} before the sync's end) are kept per
+ * security as merged ranges for {@code window-ttl-hours} and skipped while covered. After
+ * {@code backoff-after-empty-syncs} syncs in a row brought no bars and ended on an empty live-edge window, the symbol
+ * goes into exponential back-off ({@code backoff-base-minutes} doubling up to {@code backoff-max-hours}); a single
+ * quiet window of a liquid symbol does not. Any bars clear the symbol's state. The cache is saved to {@code path} so it survives
+ * restarts; symbols listed in {@code reset} (or {@code *}) are cleared at startup.
+ */
+@Component
+@Slf4j
+public class NegativeResultCache {
+
+    public record EmptyRange(LocalDateTime from, LocalDateTime to, Instant expiresAt) {
+    }
+
+    public record SymbolState(String symbol, String securityId, String exchangeSegment, int consecutiveEmpty,
+                              Instant retryAt, List<EmptyRange> ranges) {
+    }
+
+    public record Snapshot(Instant writtenAt, List<SymbolState> symbols) {
+    }
+
+    private final boolean enabled;
+    private final Path path;
+    private final Duration settle;
+    private final Duration windowTtl;
+    private final Duration backoffBase;
+    private final Duration backoffMax;
+    private final int backoffAfterEmptySyncs;
+    private final Set<String> resetSymbols;
+    private final ObjectMapper objectMapper;
+    private final Map<String, SymbolState> states = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicLong skippedWindows = new AtomicLong();
+    private final AtomicLong skippedSyncs = new AtomicLong();
+
+    public NegativeResultCache(@Value("${ingestion.negative-cache.enabled:true}") boolean enabled,
+                               @Value("${ingestion.negative-cache.path:state/negative-cache.json}") String path,
+                               @Value("${ingestion.negative-cache.settle-minutes:1440}") long settleMinutes,
+                               @Value("${ingestion.negative-cache.window-ttl-hours:168}") long windowTtlHours,
+                               @Value("${ingestion.negative-cache.backoff-base-minutes:15}") long backoffBaseMinutes,
+                               @Value("${ingestion.negative-cache.backoff-max-hours:24}") long backoffMaxHours,
+                               @Value("${ingestion.negative-cache.backoff-after-empty-syncs:3}") int backoffAfterEmptySyncs,
+                               @Value("${ingestion.negative-cache.reset:}") String reset) {
+        this.enabled = enabled;
+        this.path = Path.of(path);
+        this.settle = Duration.ofMinutes(settleMinutes);
+        this.windowTtl = Duration.ofHours(windowTtlHours);
+        this.backoffBase = Duration.ofMinutes(Math.max(1, backoffBaseMinutes));
+        this.backoffMax = Duration.ofHours(Math.max(1, backoffMaxHours));
+        this.backoffAfterEmptySyncs = Math.max(1, backoffAfterEmptySyncs);
+        this.resetSymbols = Arrays.stream(reset.split(","))
+                .map(String::trim)
+                .filter(symbol -> !symbol.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled || !Files.exists(path)) {
+            return;
+        }
+        try {
+            Snapshot snapshot = objectMapper.readValue(path.toFile(), Snapshot.class);
+            Instant now = Instant.now();
+            int backingOff = 0;
+            for (SymbolState state : snapshot.symbols() == null ? List.<SymbolState>of() : snapshot.symbols()) {
+                if (resetSymbols.contains("*") || resetSymbols.contains(state.symbol())) {
+                    dirty.set(true);
+                    continue;
+                }
+                states.put(state.symbol(), state.ranges() != null ? state : new SymbolState(state.symbol(),
+                        state.securityId(), state.exchangeSegment(), state.consecutiveEmpty(), state.retryAt(), List.of()));
+                if (state.retryAt() != null && state.retryAt().isAfter(now)) {
+                    backingOff++;
+                }
+            }
+            log.info("Loaded negative cache written at {}: {} symbols, {} backing off{}", snapshot.writtenAt(),
+                    states.size(), backingOff, resetSymbols.isEmpty() ? "" : " (reset " + resetSymbols + ")");
+        } catch (IOException e) {
+            log.error("Failed to read negative cache from {}; starting empty", path, e);
+        }
+    }
+
+    /**
+     * True while the symbol is in back-off after repeated empty syncs; the whole sync can be skipped.
+     */
+    public boolean isBackingOff(Ticker ticker) {
+        if (!enabled) {
+            return false;
+        }
+        SymbolState state = states.get(ticker.getSymbol());
+        if (state == null || state.retryAt() == null || !state.retryAt().isAfter(Instant.now())
+                || !sameSecurity(state, ticker)) {
+            return false;
+        }
+        skippedSyncs.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * True when {@code [from, to)} lies inside a settled range that was empty and has not expired.
+     */
+    public boolean isKnownEmpty(Ticker ticker, LocalDateTime from, LocalDateTime to) {
+        if (!enabled) {
+            return false;
+        }
+        SymbolState state = states.get(ticker.getSymbol());
+        if (state == null || !sameSecurity(state, ticker)) {
+            return false;
+        }
+        Instant now = Instant.now();
+        for (EmptyRange range : state.ranges()) {
+            if (!range.from().isAfter(from) && !range.to().isBefore(to) && range.expiresAt().isAfter(now)) {
+                skippedWindows.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a window that returned no bars; {@code syncEnd} is the end of the sync the window belongs to. Returns
+     * {@code true} when the window is at the live edge (not yet settled), where only
+     * {@link #recordEmptySync} can act on it.
+     */
+    public boolean recordEmpty(Ticker ticker, LocalDateTime from, LocalDateTime to, LocalDateTime syncEnd) {
+        boolean settled = !to.isAfter(syncEnd.minus(settle));
+        if (!enabled || !settled) {
+            return !settled;
+        }
+        Instant now = Instant.now();
+        states.compute(ticker.getSymbol(), (symbol, state) -> {
+            if (state != null && !sameSecurity(state, ticker)) {
+                state = null;
+            }
+            int consecutive = state == null ? 0 : state.consecutiveEmpty();
+            Instant retryAt = state == null ? null : state.retryAt();
+            List<EmptyRange> ranges = merge(state == null ? List.of() : state.ranges(),
+                    new EmptyRange(from, to, now.plus(windowTtl)), now);
+            return new SymbolState(symbol, ticker.getSecurityId(), ticker.getExchangeSegment(), consecutive,
+                    retryAt, ranges);
+        });
+        dirty.set(true);
+        return false;
+    }
+
+    /**
+     * Records a whole sync that brought no bars and ended on an empty live-edge window. Once
+     * {@code backoff-after-empty-syncs} such syncs happen in a row, the symbol backs off.
+     */
+    public void recordEmptySync(Ticker ticker, LocalDateTime syncEnd) {
+        if (!enabled) {
+            return;
+        }
+        Instant now = Instant.now();
+        states.compute(ticker.getSymbol(), (symbol, state) -> {
+            if (state != null && !sameSecurity(state, ticker)) {
+                state = null;
+            }
+            int consecutive = (state == null ? 0 : state.consecutiveEmpty()) + 1;
+            Instant retryAt = state == null ? null : state.retryAt();
+            List<EmptyRange> ranges = state == null ? List.of() : state.ranges();
+            if (consecutive >= backoffAfterEmptySyncs) {
+                Duration delay = backoffBase.multipliedBy(1L << Math.min(consecutive - backoffAfterEmptySyncs, 20));
+                retryAt = now.plus(delay.compareTo(backoffMax) > 0 ? backoffMax : delay);
+                log.info("No data for {} up to {}; backing off until {} ({} empty syncs in a row)",
+                        symbol, syncEnd, retryAt, consecutive);
+            }
+            return new SymbolState(symbol, ticker.getSecurityId(), ticker.getExchangeSegment(), consecutive,
+                    retryAt, ranges);
+        });
+        dirty.set(true);
+    }
+
+    /**
+     * Forgets everything about the symbol once it returns bars again.
+     */
+    public void recordData(Ticker ticker) {
+        if (enabled && states.remove(ticker.getSymbol()) != null) {
+            dirty.set(true);
+            log.info("{} returned data again; cleared its negative cache entry", ticker.getSymbol());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.negative-cache.flush-interval-ms:60000}",
+            initialDelayString = "${ingestion.negative-cache.flush-interval-ms:60000}")
+    public void flush() {
+        if (!enabled || !dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            List<SymbolState> symbols = new ArrayList<>(states.values());
+            symbols.sort(Comparator.comparing(SymbolState::symbol));
+            objectMapper.writeValue(tmp.toFile(), new Snapshot(Instant.now(), symbols));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Failed to write negative cache to {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.stats.report-interval-ms:60000}",
+            initialDelayString = "${ingestion.stats.report-interval-ms:60000}")
+    public void reportStats() {
+        long windows = skippedWindows.getAndSet(0);
+        long syncs = skippedSyncs.getAndSet(0);
+        if (windows == 0 && syncs == 0) {
+            return;
+        }
+        Instant now = Instant.now();
+        long backingOff = states.values().stream()
+                .filter(state -> state.retryAt() != null && state.retryAt().isAfter(now))
+                .count();
+        log.info("Negative cache: skipped {} known-empty windows and {} syncs; {} symbols cached, {} backing off",
+                windows, syncs, states.size(), backingOff);
+    }
+
+    private static boolean sameSecurity(SymbolState state, Ticker ticker) {
+        return String.valueOf(state.securityId()).equals(String.valueOf(ticker.getSecurityId()))
+                && String.valueOf(state.exchangeSegment()).equals(String.valueOf(ticker.getExchangeSegment()));
+    }
+
+    /**
+     * Adds {@code added} to the live ranges, joining any that overlap or touch it.
+     */
+    private static List<EmptyRange> merge(List<EmptyRange> ranges, EmptyRange added, Instant now) {
+        List<EmptyRange> live = new ArrayList<>(ranges.size() + 1);
+        for (EmptyRange range : ranges) {
+            if (range.expiresAt().isAfter(now)) {
+                live.add(range);
+            }
+        }
+        live.add(added);
+        live.sort(Comparator.comparing(EmptyRange::from));
+        List<EmptyRange> merged = new ArrayList<>(live.size());
+        for (EmptyRange range : live) {
+            EmptyRange last = merged.isEmpty() ? null : merged.getLast();
+            if (last != null && !range.from().isAfter(last.to())) {
+                LocalDateTime to = range.to().isAfter(last.to()) ? range.to() : last.to();
+                Instant expiresAt = range.expiresAt().isBefore(last.expiresAt()) ? range.expiresAt() : last.expiresAt();
+                merged.set(merged.size() - 1, new EmptyRange(last.from(), to, expiresAt));
+            } else {
+                merged.add(range);
+            }
+        }
+        return List.copyOf(merged);
+    }
+}
@@ -0,0 +1,105 @@
+package com.dhan.ingestion.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Byte-bounded LRU cache of encoded OHLC query results, invalidated per symbol when its cursor advances.
+ */
+@Component
+@Slf4j
+public class OhlcQueryCache {
+
+    public record Key(String symbol, String interval, LocalDateTime from, LocalDateTime to, String format) {
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Set<Key>> keysBySymbol = new HashMap<>();
+    private final Map<String, Long> generations = new HashMap<>();
+    private long sizeBytes;
+
+    public OhlcQueryCache(@Value("${ingestion.query-api.cache-max-bytes:67108864}") long maxBytes,
+                          @Value("${ingestion.query-api.cache-max-entry-bytes:8388608}") long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+    }
+
+    public synchronized Optional<byte[]> get(Key key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    /**
+     * Returns the invalidation generation of a symbol; pass it back to {@link #put} so results computed
+     * before a concurrent cursor advance are never cached.
+     */
+    public synchronized long generation(String symbol) {
+        return generations.getOrDefault(symbol, 0L);
+    }
+
+    public synchronized void put(Key key, byte[] value, long generation) {
+        if (value.length > maxEntryBytes || generation != generations.getOrDefault(key.symbol(), 0L)) {
+            return;
+        }
+        byte[] previous = entries.put(key, value);
+        if (previous != null) {
+            sizeBytes -= previous.length;
+        }
+        sizeBytes += value.length;
+        keysBySymbol.computeIfAbsent(key.symbol(), ignored -> new HashSet<>()).add(key);
+        evictToBudget();
+    }
+
+    public synchronized void invalidate(String symbol) {
+        generations.merge(symbol, 1L, Long::sum);
+        Set<Key> keys = keysBySymbol.remove(symbol);
+        if (keys == null) {
+            return;
+        }
+        for (Key key : keys) {
+            byte[] removed = entries.remove(key);
+            if (removed != null) {
+                sizeBytes -= removed.length;
+            }
+        }
+        log.debug("Invalidated {} cached query results for {}", keys.size(), symbol);
+    }
+
+    /**
+     * The largest result that is kept; larger ones are streamed without a copy.
+     */
+    public long maxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    private void evictToBudget() {
+        Iterator<Map.Entry<Key, byte[]>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Key, byte[]> eldest = iterator.next();
+            iterator.remove();
+            sizeBytes -= eldest.getValue().length;
+            Set<Key> keys = keysBySymbol.get(eldest.getKey().symbol());
+            if (keys != null) {
+                keys.remove(eldest.getKey());
+                if (keys.isEmpty()) {
+                    keysBySymbol.remove(eldest.getKey().symbol());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.repository.OhlcRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class OhlcQueryService {
+
+    /**
+     * Sends the success status and returns the response body; only called once the result is known to exist.
+     */
+    @FunctionalInterface
+    public interface ResponseOpener {
+        OutputStream open() throws IOException;
+    }
+
+    private static final Map<String, String> INTERVAL_RELATIONS = Map.ofEntries(
+            Map.entry("1m", "dhan_ohlc_1m"),
+            Map.entry("2m", "dhan_ohlc_2m"),
+            Map.entry("5m", "dhan_ohlc_5m"),
+            Map.entry("15m", "dhan_ohlc_15m"),
+            Map.entry("30m", "dhan_ohlc_30m"),
+            Map.entry("1h", "dhan_ohlc_1h"),
+            Map.entry("2h", "dhan_ohlc_2h"),
+            Map.entry("4h", "dhan_ohlc_4h"),
+            Map.entry("1d", "dhan_ohlc_1d"),
+            Map.entry("1w", "dhan_ohlc_1w"),
+            Map.entry("1mo", "dhan_ohlc_1mo")
+    );
+
+    private static final Map<String, Long> INTERVAL_MINUTES = Map.ofEntries(
+            Map.entry("1m", 1L),
+            Map.entry("2m", 2L),
+            Map.entry("5m", 5L),
+            Map.entry("15m", 15L),
+            Map.entry("30m", 30L),
+            Map.entry("1h", 60L),
+            Map.entry("2h", 120L),
+            Map.entry("4h", 240L),
+            Map.entry("1d", 1_440L),
+            Map.entry("1w", 10_080L),
+            Map.entry("1mo", 40_320L)
+    );
+
+    private static final Map<String, String> FORMATS = Map.of(
+            "arrow", "ArrowStream",
+            "rowbinary", "RowBinaryWithNamesAndTypes"
+    );
+
+    private final OhlcRepository ohlcRepository;
+    private final OhlcQueryCache ohlcQueryCache;
+    private final long maxRows;
+
+    public OhlcQueryService(OhlcRepository ohlcRepository,
+                            OhlcQueryCache ohlcQueryCache,
+                            @Value("${ingestion.query-api.max-rows:500000}") long maxRows) {
+        this.ohlcRepository = ohlcRepository;
+        this.ohlcQueryCache = ohlcQueryCache;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Writes the encoded bars for {@code [from, to)} to the body returned by {@code response}, streaming them from
+     * ClickHouse; only results that fit a cache entry are kept in memory. Returns {@code false} when ClickHouse could
+     * not be queried, in which case {@code response} was not opened.
+     */
+    public boolean query(String symbol, String interval, LocalDateTime from, LocalDateTime to, String format,
+                         ResponseOpener response) throws IOException {
+        String relation = INTERVAL_RELATIONS.get(interval);
+        if (relation == null) {
+            throw new IllegalArgumentException("Unsupported interval: " + interval);
+        }
+        String clickhouseFormat = FORMATS.get(format);
+        if (clickhouseFormat == null) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        if (symbol == null || symbol.isBlank()) {
+            throw new IllegalArgumentException("Missing symbol");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        // one bar per interval at most, so the span bounds the rows a request can pull
+        long bars = Duration.between(from, to).toMinutes() / INTERVAL_MINUTES.get(interval);
+        if (bars > maxRows) {
+            throw new IllegalArgumentException("Range spans up to " + bars + " " + interval + " bars; at most "
+                    + maxRows + " per request");
+        }
+
+        OhlcQueryCache.Key key = new OhlcQueryCache.Key(symbol, interval, from, to, format);
+        Optional<byte[]> cached = ohlcQueryCache.get(key);
+        if (cached.isPresent()) {
+            try (OutputStream out = response.open()) {
+                out.write(cached.get());
+            }
+            return true;
+        }
+        long generation = ohlcQueryCache.generation(symbol);
+        CachingOutputStream[] copy = new CachingOutputStream[1];
+        boolean answered = ohlcRepository.streamOhlc(relation, symbol, from, to, clickhouseFormat, body -> {
+            copy[0] = new CachingOutputStream(response.open(), ohlcQueryCache.maxEntryBytes());
+            body.transferTo(copy[0]);
+            // closed only once complete: a body cut short must not end like a whole one
+            copy[0].close();
+        });
+        if (answered && copy[0].cached() != null) {
+            ohlcQueryCache.put(key, copy[0].cached(), generation);
+        }
+        return answered;
+    }
+
+    public static String contentType(String format) {
+        return "arrow".equals(format) ? "application/vnd.apache.arrow.stream" : "application/octet-stream";
+    }
+
+    /**
+     * Passes bytes through and keeps a copy while it stays within {@code limit}.
+     */
+    private static final class CachingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CachingOutputStream(OutputStream out, long limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            if (copy != null) {
+                if (copy.size() + (long) length > limit) {
+                    copy = null;
+                } else {
+                    copy.write(bytes, offset, length);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        byte[] cached() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+}
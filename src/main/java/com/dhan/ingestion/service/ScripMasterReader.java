@@ -0,0 +1,146 @@
+package com.dhan.ingestion.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Line-at-a-time CSV reader over raw bytes. Fields are kept as offsets into a reused line buffer, so rows that are
+ * filtered out never allocate; quoted fields are unescaped in place.
+ */
+final class ScripMasterReader implements Closeable {
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position;
+    private int limit;
+    private byte[] line = new byte[512];
+    private int lineLength;
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+    private long lineNumber;
+
+    ScripMasterReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Advances to the next non-empty line; returns {@code false} at end of input.
+     */
+    boolean next() throws IOException {
+        while (readLine()) {
+            if (lineLength > 0) {
+                split();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    int fieldLength(int field) {
+        return field < fieldCount ? fieldEnds[field] - fieldStarts[field] : 0;
+    }
+
+    /**
+     * Byte at {@code index} within the field, or {@code 0} when out of range.
+     */
+    byte byteAt(int field, int index) {
+        return index < fieldLength(field) ? line[fieldStarts[field] + index] : 0;
+    }
+
+    String field(int field) {
+        if (field >= fieldCount) {
+            return "";
+        }
+        return new String(line, fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.UTF_8).trim();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean inQuotes = false;
+        boolean sawAny = false;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (sawAny) {
+                        lineNumber++;
+                    }
+                    return sawAny;
+                }
+            }
+            byte b = buffer[position++];
+            sawAny = true;
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes && b == '\n') {
+                lineNumber++;
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return true;
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+        }
+    }
+
+    private void split() {
+        fieldCount = 0;
+        int read = 0;
+        while (read <= lineLength) {
+            if (fieldCount == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+                fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            }
+            if (read < lineLength && line[read] == '"') {
+                int write = read;
+                fieldStarts[fieldCount] = write;
+                read++;
+                while (read < lineLength) {
+                    if (line[read] == '"') {
+                        if (read + 1 < lineLength && line[read + 1] == '"') {
+                            line[write++] = '"';
+                            read += 2;
+                            continue;
+                        }
+                        read++;
+                        break;
+                    }
+                    line[write++] = line[read++];
+                }
+                fieldEnds[fieldCount++] = write;
+                while (read < lineLength && line[read] != ',') {
+                    read++;
+                }
+            } else {
+                fieldStarts[fieldCount] = read;
+                while (read < lineLength && line[read] != ',') {
+                    read++;
+                }
+                fieldEnds[fieldCount++] = read;
+            }
+            read++;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.dhan.ingestion.service;
+
+import com.dhan.ingestion.client.OhlcFetchResult;
+import com.dhan.ingestion.domain.Ticker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses fetch window sizes per ticker so each DhanHQ response carries roughly the same number of rows.
+ * Expected density starts from the segment's session length and the weekday calendar, and is corrected per symbol
+ * from observed fill ratio and response bytes per row. Latency is fitted as {@code a + b * rows}, so the fixed
+ * per-request cost of small live-edge windows is not mistaken for a per-row cost that would shrink backfill windows.
+ */
+@Component
+public class WindowPlanner {
+
+    private static final double ALPHA = 0.3;
+    private static final double MIN_FILL_RATIO = 0.02;
+    private static final double LATENCY_DECAY = 0.9;
+    private static final double MIN_LATENCY_SAMPLES = 3;
+    private static final double MIN_ROWS_SPREAD = 0.25;
+    private static final double MIN_RATE_ROWS = 1000;
+    private static final int DEFAULT_BARS_PER_DAY = 375;
+    private static final Map<String, Integer> BARS_PER_SESSION = Map.of(
+            "IDX_I", 375,
+            "NSE_EQ", 375,
+            "NSE_FNO", 375,
+            "BSE_EQ", 375,
+            "BSE_FNO", 375,
+            "NSE_CURRENCY", 480,
+            "BSE_CURRENCY", 480,
+            "MCX_COMM", 870
+    );
+
+    private static final class SymbolStats {
+        private double fillRatio = 1.0;
+        private double bytesPerRow;
+        // exponentially weighted sums for the least-squares fit of latency against rows
+        private double weight;
+        private double sumRows;
+        private double sumNanos;
+        private double sumRowsSquared;
+        private double sumRowsNanos;
+        private double fixedNanos;
+        private double nanosPerRow;
+    }
+
+    private final int maxWindowDays;
+    private final int minWindowMinutes;
+    private final long targetRows;
+    private final long targetResponseBytes;
+    private final long targetLatencyNanos;
+    private final Map<String, SymbolStats> statsBySymbol = new ConcurrentHashMap<>();
+
+    public WindowPlanner(@Value("${ingestion.history.max-window-days:89}") int maxWindowDays,
+                         @Value("${ingestion.window-planner.min-window-minutes:1440}") int minWindowMinutes,
+                         @Value("${ingestion.window-planner.target-rows:20000}") long targetRows,
+                         @Value("${ingestion.window-planner.target-response-bytes:4194304}") long targetResponseBytes,
+                         @Value("${ingestion.window-planner.target-latency-ms:3000}") long targetLatencyMs) {
+        this.maxWindowDays = maxWindowDays;
+        this.minWindowMinutes = minWindowMinutes;
+        this.targetRows = targetRows;
+        this.targetResponseBytes = targetResponseBytes;
+        this.targetLatencyNanos = targetLatencyMs * 1_000_000L;
+    }
+
+    /**
+     * Returns the end of the next window starting at {@code windowStart}, never past {@code end}.
+     */
+    public LocalDateTime nextWindowEnd(Ticker ticker, LocalDateTime windowStart, LocalDateTime end) {
+        LocalDateTime maxEnd = windowStart.plusDays(maxWindowDays);
+        if (maxEnd.isAfter(end)) {
+            maxEnd = end;
+        }
+        long rowBudget = rowBudget(ticker.getSymbol());
+        double rowsPerTradingDay = barsPerSession(ticker.getExchangeSegment()) * fillRatio(ticker.getSymbol());
+
+        LocalDateTime windowEnd = windowStart.toLocalDate().plusDays(1).atStartOfDay();
+        double expectedRows = isTradingDay(windowStart.toLocalDate())
+                ? rowsPerTradingDay * dayFraction(windowStart) : 0;
+        while (windowEnd.isBefore(maxEnd)) {
+            double nextDayRows = isTradingDay(windowEnd.toLocalDate()) ? rowsPerTradingDay : 0;
+            if (expectedRows + nextDayRows > rowBudget) {
+                break;
+            }
+            expectedRows += nextDayRows;
+            windowEnd = windowEnd.plusDays(1);
+        }
+
+        LocalDateTime minEnd = windowStart.plusMinutes(minWindowMinutes);
+        if (windowEnd.isBefore(minEnd)) {
+            windowEnd = minEnd;
+        }
+        return windowEnd.isAfter(maxEnd) ? maxEnd : windowEnd;
+    }
+
+    /**
+     * Expected number of bars for the window, from segment session length, weekdays and the symbol's fill ratio.
+     */
+    public double expectedRows(Ticker ticker, LocalDateTime from, LocalDateTime to) {
+        return expectedFullSessionRows(ticker.getExchangeSegment(), from, to) * fillRatio(ticker.getSymbol());
+    }
+
+    /**
+     * Observed response bytes per bar for the symbol, or {@code 0} before the first observation.
+     */
+    public double bytesPerRow(String symbol) {
+        SymbolStats stats = statsBySymbol.get(symbol);
+        return stats == null ? 0 : stats.bytesPerRow;
+    }
+
+    public void record(Ticker ticker, LocalDateTime from, LocalDateTime to, OhlcFetchResult result) {
+        int rows = result.rowCount();
+        double fullSessionRows = expectedFullSessionRows(ticker.getExchangeSegment(), from, to);
+        SymbolStats stats = statsBySymbol.computeIfAbsent(ticker.getSymbol(), ignored -> new SymbolStats());
+        synchronized (stats) {
+            if (fullSessionRows >= barsPerSession(ticker.getExchangeSegment())) {
+                double fill = Math.clamp(rows / fullSessionRows, MIN_FILL_RATIO, 1.0);
+                stats.fillRatio = ewma(stats.fillRatio, fill);
+            }
+            if (rows > 0) {
+                stats.bytesPerRow = stats.bytesPerRow == 0
+                        ? (double) result.responseBytes() / rows
+                        : ewma(stats.bytesPerRow, (double) result.responseBytes() / rows);
+            }
+            fitLatency(stats, rows, result.latencyNanos());
+        }
+    }
+
+    /**
+     * Updates the fit of {@code latency = fixedNanos + nanosPerRow * rows}. While the observed row counts are too
+     * alike to separate the two terms, the per-row rate is only taken from windows of at least
+     * {@code MIN_RATE_ROWS} rows (treating all their latency as per-row, which errs towards smaller windows); below
+     * that no latency cap applies.
+     */
+    private static void fitLatency(SymbolStats stats, double rows, double nanos) {
+        stats.weight = LATENCY_DECAY * stats.weight + 1;
+        stats.sumRows = LATENCY_DECAY * stats.sumRows + rows;
+        stats.sumNanos = LATENCY_DECAY * stats.sumNanos + nanos;
+        stats.sumRowsSquared = LATENCY_DECAY * stats.sumRowsSquared + rows * rows;
+        stats.sumRowsNanos = LATENCY_DECAY * stats.sumRowsNanos + rows * nanos;
+
+        double meanRows = stats.sumRows / stats.weight;
+        double meanNanos = stats.sumNanos / stats.weight;
+        double rowsVariance = stats.sumRowsSquared / stats.weight - meanRows * meanRows;
+        double spread = MIN_ROWS_SPREAD * Math.max(meanRows, 1);
+        if (stats.weight >= MIN_LATENCY_SAMPLES && rowsVariance > spread * spread) {
+            double slope = (stats.sumRowsNanos / stats.weight - meanRows * meanNanos) / rowsVariance;
+            stats.nanosPerRow = Math.max(slope, 0);
+            stats.fixedNanos = Math.max(meanNanos - stats.nanosPerRow * meanRows, 0);
+        } else if (meanRows >= MIN_RATE_ROWS) {
+            stats.nanosPerRow = meanNanos / meanRows;
+            stats.fixedNanos = 0;
+        } else {
+            stats.nanosPerRow = 0;
+            stats.fixedNanos = 0;
+        }
+    }
+
+    private long rowBudget(String symbol) {
+        long budget = targetRows;
+        SymbolStats stats = statsBySymbol.get(symbol);
+        if (stats != null) {
+            if (stats.bytesPerRow > 0) {
+                budget = Math.min(budget, (long) (targetResponseBytes / stats.bytesPerRow));
+            }
+            // when the fixed cost alone exceeds the target, smaller windows cannot help
+            if (stats.nanosPerRow > 0 && stats.fixedNanos < targetLatencyNanos) {
+                budget = Math.min(budget, (long) ((targetLatencyNanos - stats.fixedNanos) / stats.nanosPerRow));
+            }
+        }
+        return Math.max(budget, 1);
+    }
+
+    private double fillRatio(String symbol) {
+        SymbolStats stats = statsBySymbol.get(symbol);
+        return stats == null ? 1.0 : stats.fillRatio;
+    }
+
+    private double expectedFullSessionRows(String segment, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return 0;
+        }
+        int barsPerSession = barsPerSession(segment);
+        long minutes = ChronoUnit.MINUTES.between(from, to);
+        if (minutes < 24 * 60) {
+            return isTradingDay(from.toLocalDate()) ? Math.min(minutes, barsPerSession) : 0;
+        }
+        long tradingDays = 0;
+        for (LocalDate day = from.toLocalDate(); day.isBefore(to.toLocalDate()); day = day.plusDays(1)) {
+            if (isTradingDay(day)) {
+                tradingDays++;
+            }
+        }
+        return (double) tradingDays * barsPerSession;
+    }
+
+    private int barsPerSession(String segment) {
+        return segment == null ? DEFAULT_BARS_PER_DAY : BARS_PER_SESSION.getOrDefault(segment, DEFAULT_BARS_PER_DAY);
+    }
+
+    private static double dayFraction(LocalDateTime time) {
+        return 1.0 - time.toLocalTime().toSecondOfDay() / 86_400.0;
+    }
+
+    private static boolean isTradingDay(LocalDate day) {
+        DayOfWeek dayOfWeek = day.getDayOfWeek();
+        return dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY;
+    }
+
+    private static double ewma(double previous, double sample) {
+        return previous + ALPHA * (sample - previous);
+    }
+}
@@ -0,0 +1,26 @@
+package com.dhan.ingestion.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One ticker cursor mutation in ClickHouse.
+ */
+@Name("com.dhan.ingestion.CursorUpdate")
+@Label("Cursor Update")
+@Category({"Dhan Ingestion", "ClickHouse"})
+@StackTrace(false)
+public class CursorUpdateEvent extends Event {
+
+    @Label("Symbol")
+    public String symbol;
+
+    @Label("Cursor")
+    public String cursor;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,67 @@
+package com.dhan.ingestion.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One DhanHQ chart request for a ticker window, including retries. The event duration covers the whole call;
+ * the timespans split it into waiting for a request slot, HTTP round trips and response parsing.
+ */
+@Name("com.dhan.ingestion.OhlcFetch")
+@Label("OHLC Fetch")
+@Category({"Dhan Ingestion", "DhanHQ"})
+@Description("DhanHQ chart request for one ticker window")
+@StackTrace(false)
+public class OhlcFetchEvent extends Event {
+
+    @Label("Symbol")
+    public String symbol;
+
+    @Label("Exchange Segment")
+    public String exchangeSegment;
+
+    @Label("Interval")
+    public String interval;
+
+    @Label("Window From")
+    public String windowFrom;
+
+    @Label("Window To")
+    public String windowTo;
+
+    @Label("Permit Wait")
+    @Description("Time spent waiting for segment and credential slots")
+    @Timespan(Timespan.NANOSECONDS)
+    public long permitWait;
+
+    @Label("HTTP")
+    @Timespan(Timespan.NANOSECONDS)
+    public long http;
+
+    @Label("Parse")
+    @Timespan(Timespan.NANOSECONDS)
+    public long parse;
+
+    @Label("Attempts")
+    public int attempts;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Response Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Hedge")
+    @Description("none, lost (a hedged copy was sent but the original answered first) or won")
+    public String hedge;
+}
@@ -0,0 +1,62 @@
+package com.dhan.ingestion.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One ClickHouse insert of a serialized row batch. Recovery is the time spent re-sending after rows were rejected.
+ */
+@Name("com.dhan.ingestion.OhlcInsert")
+@Label("OHLC Insert")
+@Category({"Dhan Ingestion", "ClickHouse"})
+@Description("ClickHouse insert of one OHLC row batch")
+@StackTrace(false)
+public class OhlcInsertEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("First Symbol")
+    public String symbol;
+
+    @Label("First Bar")
+    @Description("Time of the first bar sent (IST); empty for dead-letter row replays")
+    public String firstBar;
+
+    @Label("Last Bar")
+    @Description("Time of the last bar sent (IST); with a multi-symbol batch, the last symbol's")
+    public String lastBar;
+
+    @Label("Serialize")
+    @Timespan(Timespan.NANOSECONDS)
+    public long serialize;
+
+    @Label("Send")
+    @Description("First attempt, including streaming the body")
+    @Timespan(Timespan.NANOSECONDS)
+    public long send;
+
+    @Label("Recovery")
+    @Description("Re-sends after rows were rejected")
+    @Timespan(Timespan.NANOSECONDS)
+    public long recovery;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Rejected Rows")
+    public int rejectedRows;
+
+    @Label("Body Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Success")
+    public boolean success;
+}
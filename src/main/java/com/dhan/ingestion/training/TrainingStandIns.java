@@ -0,0 +1,331 @@
+package com.dhan.ingestion.training;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-ins for DhanHQ and the ClickHouse HTTP interface, used by the {@code training} profile to run a
+ * representative offline workload (AOT cache training, native-image PGO, throughput comparisons).
+ * <p>
+ * Like a table with a deduplication window, the ClickHouse stand-in drops an insert whose
+ * {@code insert_deduplication_token} it has already seen for that table. With {@code lost-ack-every} set, every Nth
+ * insert is applied but answered with a 503, as after a timeout that hid a successful insert. The tokens of those
+ * inserts are remembered until a re-send repeats them, so {@link TrainingWorkload} can check that every lost ack
+ * was retried under the same token.
+ */
+@Component
+@Profile("training")
+@Slf4j
+public class TrainingStandIns {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+    private static final DateTimeFormatter DHAN_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern FROM_PATTERN = Pattern.compile("\"fromDate\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern TO_PATTERN = Pattern.compile("\"toDate\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern SYMBOL_PATTERN = Pattern.compile("WHERE symbol = '([^']+)'");
+    private static final Pattern INSERT_TABLE_PATTERN = Pattern.compile("^INSERT INTO (\\S+)");
+    private static final int DEDUPLICATION_WINDOW = 1000;
+    private static final LocalTime SESSION_OPEN = LocalTime.of(9, 15);
+    private static final LocalTime SESSION_CLOSE = LocalTime.of(15, 29);
+
+    private final int port;
+    private final int tickerCount;
+    private final int historyDays;
+    private final int lostAckEvery;
+    private final Map<String, byte[]> intradayResponses = new ConcurrentHashMap<>();
+    private final LongAdder insertedRows = new LongAdder();
+    private final LongAdder insertedBytes = new LongAdder();
+    private final AtomicLong inserts = new AtomicLong();
+    private final LongAdder lostAcks = new LongAdder();
+    private final LongAdder deduplicatedInserts = new LongAdder();
+    private final Map<String, Set<String>> recentTokens = new ConcurrentHashMap<>();
+    private final Set<String> unresolvedLostAcks = ConcurrentHashMap.newKeySet();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private LocalDateTime tickerCursor;
+
+    public TrainingStandIns(@Value("${ingestion.training.port:18123}") int port,
+                            @Value("${ingestion.training.tickers:200}") int tickerCount,
+                            @Value("${ingestion.training.history-days:30}") int historyDays,
+                            @Value("${ingestion.training.lost-ack-every:0}") int lostAckEvery) {
+        this.port = port;
+        this.tickerCount = tickerCount;
+        this.historyDays = historyDays;
+        this.lostAckEvery = lostAckEvery;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        this.tickerCursor = LocalDate.now(IST).minusDays(historyDays).atStartOfDay();
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(executor);
+        server.createContext("/v2/charts/intraday", this::handleIntraday);
+        server.createContext("/", this::handleClickhouse);
+        server.start();
+        log.info("Training stand-ins listening on 127.0.0.1:{} ({} tickers, {} days of history)", port, tickerCount, historyDays);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    public long getInsertedRows() {
+        return insertedRows.sum();
+    }
+
+    public long getInsertedBytes() {
+        return insertedBytes.sum();
+    }
+
+    public long getLostAcks() {
+        return lostAcks.sum();
+    }
+
+    public long getDeduplicatedInserts() {
+        return deduplicatedInserts.sum();
+    }
+
+    /**
+     * Inserts answered with a lost ack whose token no re-send has repeated (yet).
+     */
+    public int getUnresolvedLostAcks() {
+        return unresolvedLostAcks.size();
+    }
+
+    /**
+     * Forgets the tokens seen so far; every round re-ingests the same windows as if they were new data.
+     */
+    public void startRound() {
+        recentTokens.clear();
+    }
+
+    private void handleIntraday(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String from = extract(FROM_PATTERN, request);
+            String to = extract(TO_PATTERN, request);
+            if (from == null || to == null) {
+                send(exchange, 400, "{\"errorCode\":\"DH-905\",\"errorMessage\":\"Missing dates\"}");
+                return;
+            }
+            byte[] body = intradayResponses.computeIfAbsent(from + "|" + to, key -> intradayPayload(
+                    LocalDateTime.parse(from, DHAN_FORMATTER), LocalDateTime.parse(to, DHAN_FORMATTER)));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private void handleClickhouse(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String query = queryParam(exchange.getRequestURI().getRawQuery(), "query");
+            if (query == null) {
+                send(exchange, 200, "Ok.\n");
+                return;
+            }
+            if (query.startsWith("INSERT")) {
+                String token = queryParam(exchange.getRequestURI().getRawQuery(), "insert_deduplication_token");
+                if (token != null && !rememberToken(query, token)) {
+                    exchange.getRequestBody().readAllBytes();
+                    deduplicatedInserts.increment();
+                    unresolvedLostAcks.remove(tableOf(query) + " " + token);
+                    send(exchange, 200, "");
+                    return;
+                }
+                countRows(exchange.getRequestBody());
+                if (lostAckEvery > 0 && inserts.incrementAndGet() % lostAckEvery == 0) {
+                    lostAcks.increment();
+                    unresolvedLostAcks.add(tableOf(query) + " " + token);
+                    send(exchange, 503, "Code: 209. DB::NetException: Timeout exceeded while writing to socket (stand-in)");
+                    return;
+                }
+                send(exchange, 200, "");
+            } else if (query.contains("FROM") && query.contains(".tickers") && query.startsWith("SELECT")) {
+                send(exchange, 200, tickerRows(query));
+            } else {
+                exchange.getRequestBody().readAllBytes();
+                send(exchange, 200, "");
+            }
+        }
+    }
+
+    /**
+     * Returns {@code false} when the token was already seen for the insert's table within the window.
+     */
+    private boolean rememberToken(String query, String token) {
+        Set<String> tokens = recentTokens.computeIfAbsent(tableOf(query), key -> Collections.synchronizedSet(
+                Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, false) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                        return size() > DEDUPLICATION_WINDOW;
+                    }
+                })));
+        return tokens.add(token);
+    }
+
+    private static String tableOf(String query) {
+        Matcher matcher = INSERT_TABLE_PATTERN.matcher(query);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    private void countRows(InputStream body) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long rows = 0;
+        long bytes = 0;
+        int lastByte = '\n';
+        int read;
+        while ((read = body.read(buffer)) > 0) {
+            bytes += read;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    rows++;
+                }
+            }
+            lastByte = buffer[read - 1];
+        }
+        if (bytes > 0 && lastByte != '\n') {
+            rows++;
+        }
+        insertedRows.add(rows);
+        insertedBytes.add(bytes);
+    }
+
+    private String tickerRows(String query) {
+        String cursor = tickerCursor.format(DHAN_FORMATTER);
+        Matcher matcher = SYMBOL_PATTERN.matcher(query);
+        if (matcher.find()) {
+            return tickerRow(matcher.group(1), "13", "IDX_I", "INDEX", cursor) + "\n";
+        }
+        StringBuilder rows = new StringBuilder(tickerCount * 200);
+        for (int i = 0; i < tickerCount; i++) {
+            rows.append(tickerRow("TRAIN_EQ_" + i, String.valueOf(10_000 + i), "NSE_EQ", "EQUITY", cursor)).append('\n');
+        }
+        return rows.toString();
+    }
+
+    private String tickerRow(String symbol, String securityId, String segment, String instrument, String cursor) {
+        return "{\"symbol\":\"" + symbol + "\",\"security_id\":\"" + securityId + "\",\"exchange_segment\":\"" + segment
+                + "\",\"instrument_type\":\"" + instrument + "\",\"last_fetched_time\":\"" + cursor
+                + "\",\"is_active\":1,\"updated_at\":\"" + cursor + "\"}";
+    }
+
+    private byte[] intradayPayload(LocalDateTime from, LocalDateTime to) {
+        StringBuilder timestamps = new StringBuilder();
+        StringBuilder open = new StringBuilder();
+        StringBuilder high = new StringBuilder();
+        StringBuilder low = new StringBuilder();
+        StringBuilder close = new StringBuilder();
+        StringBuilder volume = new StringBuilder();
+        double price = 1000.0;
+        long seed = from.hashCode();
+        LocalDateTime bar = from.withSecond(0).withNano(0);
+        while (!bar.isAfter(to)) {
+            DayOfWeek day = bar.getDayOfWeek();
+            LocalTime time = bar.toLocalTime();
+            if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY || time.isAfter(SESSION_CLOSE)) {
+                bar = bar.toLocalDate().plusDays(1).atTime(SESSION_OPEN);
+                continue;
+            }
+            if (time.isBefore(SESSION_OPEN)) {
+                bar = bar.toLocalDate().atTime(SESSION_OPEN);
+                continue;
+            }
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            double drift = ((seed >>> 40) % 200 - 100) / 100.0;
+            double o = price;
+            double c = Math.max(1.0, price + drift);
+            double h = Math.max(o, c) + 0.35;
+            double l = Math.min(o, c) - 0.35;
+            price = c;
+            if (!timestamps.isEmpty()) {
+                timestamps.append(',');
+                open.append(',');
+                high.append(',');
+                low.append(',');
+                close.append(',');
+                volume.append(',');
+            }
+            timestamps.append(bar.atZone(IST).toEpochSecond());
+            open.append(round(o));
+            high.append(round(h));
+            low.append(round(l));
+            close.append(round(c));
+            volume.append(1_000 + ((seed >>> 33) & 0xFFF));
+            bar = bar.plusMinutes(1);
+        }
+        return ("{\"open\":[" + open + "],\"high\":[" + high + "],\"low\":[" + low + "],\"close\":[" + close
+                + "],\"volume\":[" + volume + "],\"timestamp\":[" + timestamps + "]}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 20.0) / 20.0;
+    }
+
+    private static String extract(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static String queryParam(String rawQuery, String name) {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.dhan.ingestion.training;
+
+import com.dhan.ingestion.scheduler.Scheduler;
+import com.dhan.ingestion.service.IngestionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Drives {@link Scheduler#runIngestionJob()} against {@link TrainingStandIns} for a fixed number of rounds, logs
+ * time-to-first-completed-run and peak throughput, then exits. With lost acks injected and deduplication tokens on,
+ * it exits non-zero unless every lost ack was re-sent under its original token and deduplicated exactly once.
+ */
+@Component
+@Profile("training")
+@Slf4j
+public class TrainingWorkload implements ApplicationRunner {
+
+    private final Scheduler scheduler;
+    private final IngestionService ingestionService;
+    private final TrainingStandIns standIns;
+    private final ConfigurableApplicationContext context;
+    private final int rounds;
+    private final Duration roundTimeout;
+    private final boolean deduplicationTokens;
+
+    public TrainingWorkload(Scheduler scheduler,
+                            IngestionService ingestionService,
+                            TrainingStandIns standIns,
+                            ConfigurableApplicationContext context,
+                            @Value("${ingestion.training.rounds:5}") int rounds,
+                            @Value("${ingestion.training.round-timeout-seconds:300}") long roundTimeoutSeconds,
+                            @Value("${ingestion.insert.deduplication-tokens:true}") boolean deduplicationTokens) {
+        this.scheduler = scheduler;
+        this.ingestionService = ingestionService;
+        this.standIns = standIns;
+        this.context = context;
+        this.rounds = rounds;
+        this.roundTimeout = Duration.ofSeconds(roundTimeoutSeconds);
+        this.deduplicationTokens = deduplicationTokens;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Instant processStart = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+        long firstRunMs = -1;
+        double peakRowsPerSec = 0;
+        long totalRows = 0;
+
+        for (int round = 1; round <= rounds; round++) {
+            standIns.startRound();
+            long rowsBefore = standIns.getInsertedRows();
+            long started = System.nanoTime();
+            scheduler.runIngestionJob();
+            if (!ingestionService.awaitIdle(roundTimeout)) {
+                log.warn("Training round {} did not finish within {}", round, roundTimeout);
+            }
+            long elapsedNanos = System.nanoTime() - started;
+            long rows = standIns.getInsertedRows() - rowsBefore;
+            double rowsPerSec = rows / Math.max(elapsedNanos / 1e9, 1e-9);
+            totalRows += rows;
+            peakRowsPerSec = Math.max(peakRowsPerSec, rowsPerSec);
+            if (round == 1) {
+                firstRunMs = Duration.between(processStart, Instant.now()).toMillis();
+            }
+            log.info("Training round {}/{}: {} rows in {} ms ({} rows/s)",
+                    round, rounds, rows, elapsedNanos / 1_000_000, Math.round(rowsPerSec));
+        }
+
+        log.info("TRAINING-SUMMARY first-run-ms={} peak-rows-per-sec={} total-rows={} inserted-bytes={} lost-acks={} "
+                        + "deduplicated-inserts={}", firstRunMs, Math.round(peakRowsPerSec), totalRows,
+                standIns.getInsertedBytes(), standIns.getLostAcks(), standIns.getDeduplicatedInserts());
+        boolean deduplicated = deduplicationCheck();
+        int code = SpringApplication.exit(context, () -> deduplicated ? 0 : 1);
+        System.exit(code);
+    }
+
+    /**
+     * A lost ack hides an insert that landed; its retry must repeat the token so the stand-in drops it. A retry
+     * under a different token (an unstable content token) is inserted again, and a missing one never resolves.
+     */
+    private boolean deduplicationCheck() {
+        long lostAcks = standIns.getLostAcks();
+        if (lostAcks == 0 || !deduplicationTokens) {
+            return true;
+        }
+        long deduplicated = standIns.getDeduplicatedInserts();
+        int unresolved = standIns.getUnresolvedLostAcks();
+        if (deduplicated != lostAcks || unresolved > 0) {
+            log.error("TRAINING-DEDUPLICATION-FAILED lost-acks={} deduplicated-inserts={} unresolved-lost-acks={}",
+                    lostAcks, deduplicated, unresolved);
+            return false;
+        }
+        log.info("TRAINING-DEDUPLICATION-OK every one of {} lost acks was re-sent with its token and deduplicated",
+                lostAcks);
+        return true;
+    }
+}
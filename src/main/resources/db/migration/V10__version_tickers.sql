@@ -0,0 +1,26 @@
+-- tickers was a ReplacingMergeTree without a version column, and the cursor mutation rewrote updated_at on every
+-- version of a symbol, so "latest version" (ORDER BY updated_at DESC LIMIT 1 BY symbol) could pick an older row
+-- after an import. Rebuild it with an explicit, service-assigned monotonic version. FINAL keeps the row the old
+-- engine would have kept (the last inserted), which becomes the current version.
+CREATE TABLE IF NOT EXISTS default.tickers_versioned
+(
+    `symbol` LowCardinality(String),
+    `security_id` String,
+    `exchange_segment` String,
+    `instrument_type` String,
+    `last_fetched_time` DateTime,
+    `is_active` UInt8 DEFAULT 1,
+    `updated_at` DateTime DEFAULT now(),
+    `version` UInt64
+)
+ENGINE = ReplacingMergeTree(version)
+ORDER BY (symbol);
+
+INSERT INTO default.tickers_versioned
+SELECT symbol, security_id, exchange_segment, instrument_type, last_fetched_time, is_active, updated_at,
+       toUInt64(toUnixTimestamp(updated_at)) * 1000000 AS version
+FROM default.tickers FINAL;
+
+EXCHANGE TABLES default.tickers AND default.tickers_versioned;
+
+DROP TABLE default.tickers_versioned;
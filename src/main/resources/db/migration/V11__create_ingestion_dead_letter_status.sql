@@ -0,0 +1,14 @@
+-- Replay outcomes for ingestion_dead_letter. They used to be ALTER ... UPDATE mutations on the dead-letter table,
+-- which are heavyweight and asynchronous, so the next replay could still read an entry as pending and replay it
+-- twice. Each outcome is now appended here as the entry's full status; attempts and replayed only ever grow, so
+-- max() per id is the current status whether or not the rows have been merged yet.
+CREATE TABLE IF NOT EXISTS default.ingestion_dead_letter_status
+(
+    `id` UUID,
+    `attempts` UInt8,
+    `replayed` UInt8,
+    `updated_at` DateTime64(3) DEFAULT now64(3)
+)
+ENGINE = ReplacingMergeTree(updated_at)
+ORDER BY (id)
+TTL toDateTime(updated_at) + INTERVAL 90 DAY;
@@ -0,0 +1,22 @@
+-- Failed fetch windows (kind = 'window') and rows rejected by ClickHouse (kind = 'row', raw JSONEachRow in payload),
+-- kept until the replay job reprocesses them.
+CREATE TABLE IF NOT EXISTS default.ingestion_dead_letter
+(
+    `id` UUID,
+    `kind` LowCardinality(String),
+    `symbol` LowCardinality(String),
+    `security_id` String,
+    `exchange_segment` LowCardinality(String),
+    `instrument_type` LowCardinality(String),
+    `window_from` DateTime('Asia/Kolkata'),
+    `window_to` DateTime('Asia/Kolkata'),
+    `reason` String CODEC(ZSTD(3)),
+    `payload` String CODEC(ZSTD(3)),
+    `attempts` UInt8 DEFAULT 0,
+    `replayed` UInt8 DEFAULT 0,
+    `recorded_at` DateTime DEFAULT now()
+)
+ENGINE = MergeTree
+PARTITION BY toYYYYMM(recorded_at)
+ORDER BY (kind, symbol, window_from, id)
+TTL recorded_at + INTERVAL 90 DAY;
@@ -0,0 +1,24 @@
+-- Deep-backfill progress per symbol and source interval. Coarse bars are written straight into the rollup
+-- *_state tables, where re-inserting a window would double-count, so the covered range must be tracked.
+CREATE TABLE IF NOT EXISTS default.dhan_backfill_progress
+(
+    `sym` LowCardinality(String),
+    `interval` LowCardinality(String),
+    `backfilled_to` DateTime('Asia/Kolkata'),
+    `updated_at` DateTime64(3, 'UTC') DEFAULT now64(3, 'UTC')
+)
+ENGINE = ReplacingMergeTree(updated_at)
+ORDER BY (sym, interval);
+
+-- Deep-backfill inserts carry an insert_deduplication_token per (symbol, window, table); a deduplication window
+-- makes a retried window a no-op instead of a double count. Materialized-view inserts are not deduplicated
+-- (deduplicate_blocks_in_dependent_materialized_views stays at its default of 0).
+ALTER TABLE default.dhan_ohlc_5m_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_15m_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_30m_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_1h_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_2h_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_4h_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_1d_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_1w_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_1mo_state MODIFY SETTING non_replicated_deduplication_window = 1000;
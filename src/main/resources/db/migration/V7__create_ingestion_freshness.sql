@@ -0,0 +1,21 @@
+-- Periodic snapshots of the per-symbol freshness lag (bellwether time minus ingestion cursor), one row per
+-- exchange segment plus an 'ALL' row. lag_histogram counts symbols with lag up to
+-- 1, 2, 5, 10, 15, 30, 60, 240 and 1440 minutes, and the last bucket everything beyond.
+CREATE TABLE IF NOT EXISTS default.ingestion_freshness
+(
+    `snapshot_time` DateTime('Asia/Kolkata'),
+    `bellwether_time` DateTime('Asia/Kolkata'),
+    `exchange_segment` LowCardinality(String),
+    `symbols` UInt32,
+    `breaching` UInt32,
+    `slo_seconds` UInt32,
+    `p50_lag_seconds` UInt32,
+    `p95_lag_seconds` UInt32,
+    `max_lag_seconds` UInt32,
+    `lag_histogram` Array(UInt32),
+    `laggards` Array(String)
+)
+ENGINE = MergeTree
+PARTITION BY toYYYYMM(snapshot_time)
+ORDER BY (exchange_segment, snapshot_time)
+TTL snapshot_time + INTERVAL 90 DAY;
@@ -0,0 +1,494 @@
+/* ============================================================
+   Scaled-integer price layout (ingestion.price-encoding = ticks)
+   Same shape as V1, with prices as Int64 paise (1 rupee = 100 ticks), so values stay exact at any price level.
+   Used instead of the dhan_ohlc* tables when INGESTION_PRICE_ENCODING=ticks; queries convert back to rupees.
+   ============================================================ */
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks
+(
+    sym LowCardinality(String),
+
+    open  Int64 CODEC(Delta(8), ZSTD(1)),
+    high  Int64 CODEC(Delta(8), ZSTD(1)),
+    low   Int64 CODEC(Delta(8), ZSTD(1)),
+    close Int64 CODEC(Delta(8), ZSTD(1)),
+
+    volume UInt64 CODEC(T64, ZSTD(1)),
+
+    time DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+
+    ingest_time DateTime64(3, 'UTC') DEFAULT now64(3, 'UTC') CODEC(DoubleDelta, ZSTD(1))
+)
+ENGINE = ReplacingMergeTree(ingest_time)
+PARTITION BY toYYYYMM(time)
+ORDER BY (sym, time);
+
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_1m_state
+(
+  sym LowCardinality(String),
+  time DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+
+  open_state  AggregateFunction(argMax, Int64, DateTime64(3, 'Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(argMax, Int64, DateTime64(3, 'Asia/Kolkata')) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(argMax, Int64, DateTime64(3, 'Asia/Kolkata')) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime64(3, 'Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(argMax, UInt64, DateTime64(3, 'Asia/Kolkata')) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(time)
+ORDER BY (sym, time);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_1m_state
+TO default.dhan_ohlc_ticks_1m_state
+AS
+SELECT
+  sym,
+  time,
+  argMaxState(open,  ingest_time) AS open_state,
+  argMaxState(high,  ingest_time) AS high_state,
+  argMaxState(low,   ingest_time) AS low_state,
+  argMaxState(close, ingest_time) AS close_state,
+  argMaxState(volume,ingest_time) AS vol_state
+FROM default.dhan_ohlc_ticks
+GROUP BY sym, time;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_1m
+(
+  sym LowCardinality(String),
+  time DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open Int64 CODEC(Delta(8), ZSTD(1)),
+  high Int64 CODEC(Delta(8), ZSTD(1)),
+  low Int64 CODEC(Delta(8), ZSTD(1)),
+  close Int64 CODEC(Delta(8), ZSTD(1)),
+  volume UInt64 CODEC(T64, ZSTD(1)),
+  upsert_time DateTime64(3, 'UTC') DEFAULT now64(3, 'UTC') CODEC(DoubleDelta, ZSTD(1))
+)
+ENGINE = ReplacingMergeTree(upsert_time)
+PARTITION BY toYYYYMM(time)
+ORDER BY (sym, time);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_1m_state_to_1m
+TO default.dhan_ohlc_ticks_1m
+AS
+SELECT
+  sym,
+  time,
+  argMaxMerge(open_state)  AS open,
+  argMaxMerge(high_state)  AS high,
+  argMaxMerge(low_state)   AS low,
+  argMaxMerge(close_state) AS close,
+  argMaxMerge(vol_state)   AS volume,
+  now64(3, 'UTC')          AS upsert_time
+FROM default.dhan_ohlc_ticks_1m_state
+WHERE
+  (toHour(time) > 9 OR (toHour(time) = 9 AND toMinute(time) >= 15))
+  AND
+  (toHour(time) < 15 OR (toHour(time) = 15 AND toMinute(time) <= 29))
+GROUP BY sym, time;
+
+
+/* ---------------- rollups from dhan_ohlc_ticks_1m ---------------- */
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_2m_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_2m_state
+TO default.dhan_ohlc_ticks_2m_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 2 MINUTE) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_5m_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_5m_state
+TO default.dhan_ohlc_ticks_5m_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 5 MINUTE) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_15m_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_15m_state
+TO default.dhan_ohlc_ticks_15m_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 15 MINUTE) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_30m_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_30m_state
+TO default.dhan_ohlc_ticks_30m_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 30 MINUTE) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_1h_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_1h_state
+TO default.dhan_ohlc_ticks_1h_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 1 HOUR) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_2h_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_2h_state
+TO default.dhan_ohlc_ticks_2h_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 2 HOUR) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_4h_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_4h_state
+TO default.dhan_ohlc_ticks_4h_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 4 HOUR) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_1d_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_1d_state
+TO default.dhan_ohlc_ticks_1d_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 1 DAY) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_1w_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_1w_state
+TO default.dhan_ohlc_ticks_1w_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 1 WEEK) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+CREATE TABLE IF NOT EXISTS default.dhan_ohlc_ticks_1mo_state
+(
+  sym LowCardinality(String),
+  ts DateTime('Asia/Kolkata') CODEC(DoubleDelta, ZSTD(1)),
+  open_state  AggregateFunction(argMin, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  high_state  AggregateFunction(max, Int64) CODEC(ZSTD(1)),
+  low_state   AggregateFunction(min, Int64) CODEC(ZSTD(1)),
+  close_state AggregateFunction(argMax, Int64, DateTime('Asia/Kolkata')) CODEC(ZSTD(1)),
+  vol_state   AggregateFunction(sum, UInt64) CODEC(ZSTD(1))
+)
+ENGINE = AggregatingMergeTree
+PARTITION BY toYYYYMM(ts)
+ORDER BY (sym, ts);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS default.mv_dhan_ohlc_ticks_to_1mo_state
+TO default.dhan_ohlc_ticks_1mo_state
+AS
+SELECT
+  sym,
+  toStartOfInterval(time, INTERVAL 1 MONTH) AS ts,
+  argMinState(open, time)  AS open_state,
+  maxState(high)           AS high_state,
+  minState(low)            AS low_state,
+  argMaxState(close, time) AS close_state,
+  sumState(volume)         AS vol_state
+FROM default.dhan_ohlc_ticks_1m
+GROUP BY sym, ts;
+
+
+/* ---------------- finalized views (prices in ticks) ---------------- */
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_2m AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_2m_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_5m AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_5m_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_15m AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_15m_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_30m AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_30m_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_1h AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_1h_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_2h AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_2h_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_4h AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_4h_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_1d AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_1d_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_1w AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_1w_state
+GROUP BY sym, ts;
+
+CREATE VIEW IF NOT EXISTS default.dhan_ohlc_ticks_1mo AS
+SELECT
+  sym,
+  ts AS time,
+  argMinMerge(open_state)  AS open,
+  maxMerge(high_state)     AS high,
+  minMerge(low_state)      AS low,
+  argMaxMerge(close_state) AS close,
+  sumMerge(vol_state)      AS volume
+FROM default.dhan_ohlc_ticks_1mo_state
+GROUP BY sym, ts;
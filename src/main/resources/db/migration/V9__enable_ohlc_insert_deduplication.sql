@@ -0,0 +1,17 @@
+-- 1m inserts carry an insert_deduplication_token derived from (symbol, window, row count, payload digest), so a
+-- batch re-sent after an ambiguous timeout or overload is dropped instead of landing twice. A block deduplicated
+-- in the source table is not pushed to its materialized views either, so the *_state aggregates (sumState(volume)
+-- in particular) are no longer double-counted. Like V6, keep the last 1000 block tokens per table.
+ALTER TABLE default.dhan_ohlc MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks MODIFY SETTING non_replicated_deduplication_window = 1000;
+
+-- Deep-backfill rollup inserts under ingestion.price-encoding = ticks (V8 was created without the V6 settings).
+ALTER TABLE default.dhan_ohlc_ticks_5m_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks_15m_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks_30m_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks_1h_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks_2h_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks_4h_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks_1d_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks_1w_state MODIFY SETTING non_replicated_deduplication_window = 1000;
+ALTER TABLE default.dhan_ohlc_ticks_1mo_state MODIFY SETTING non_replicated_deduplication_window = 1000;